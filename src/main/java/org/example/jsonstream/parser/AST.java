@@ -1,7 +1,7 @@
 package org.example.jsonstream.parser;
 
+import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.*;
 
 public class AST {
     
@@ -10,21 +10,90 @@ public class AST {
     }
     
     public static class ObjectNode implements Node {
+        // below this many properties a lookup just looks through them
+        static final int INDEX_THRESHOLD = 8;
+        
         private final ArrayList<PropertyNode> properties = new ArrayList<>();
+        private final List<PropertyNode> view = Collections.unmodifiableList(properties);
+        
+        // an open addressing hash table of the positions of the properties
+        // (plus one, so zero is empty), made the first time a big enough
+        // object is looked in, and kept up to date after that
+        private int[] index;
         
-        public List<PropertyNode> properties() { return properties; }
+        // read only, add to it with addProperty so the index keeps up
+        public List<PropertyNode> properties() { return view; }
         
         public ObjectNode addProperty(PropertyNode prop) {
             properties.add(prop);
+            if (index != null) {
+                if (properties.size() * 2 > index.length) buildIndex();
+                else insert(properties.size() - 1);
+            }
             return this;
         }
         
+        // the value of the property with this key, or null if there isn't
+        // one, and if the key is there more than once it's the last one
+        public Node get(String key) {
+            PropertyNode prop = find(key);
+            return prop == null ? null : prop.getValue();
+        }
+        
+        public boolean has(String key) {
+            return find(key) != null;
+        }
+        
+        private PropertyNode find(String key) {
+            if (index == null) {
+                if (properties.size() < INDEX_THRESHOLD) {
+                    for (int i = properties.size() - 1; i >= 0; i--) {
+                        PropertyNode prop = properties.get(i);
+                        if (key.equals(prop.getKey())) return prop;
+                    }
+                    return null;
+                }
+                buildIndex();
+            }
+            int mask = index.length - 1;
+            for (int slot = spread(key.hashCode()) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+                PropertyNode prop = properties.get(index[slot] - 1);
+                if (key.equals(prop.getKey())) return prop;
+            }
+            return null;
+        }
+        
+        // big enough to stay at most half full
+        private void buildIndex() {
+            int capacity = Integer.highestOneBit(Math.max(properties.size(), INDEX_THRESHOLD) * 4 - 1);
+            index = new int[capacity];
+            for (int i = 0; i < properties.size(); i++) insert(i);
+        }
+        
+        // a later property with the same key takes over the slot
+        private void insert(int position) {
+            String key = properties.get(position).getKey();
+            if (key == null) return;
+            int mask = index.length - 1;
+            int slot = spread(key.hashCode()) & mask;
+            for (; index[slot] != 0; slot = (slot + 1) & mask) {
+                if (key.equals(properties.get(index[slot] - 1).getKey())) break;
+            }
+            index[slot] = position + 1;
+        }
+        
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+        
+        // empty again, for a NodePool to hand out
+        void clear() {
+            properties.clear();
+            index = null;
+        }
+        
         public String toJSON() {
-            return "{"
-                    + properties.stream()
-                          .map(PropertyNode::toJSON)
-                          .collect(Collectors.joining(","))
-                    + "}";
+            return JsonWriter.toJSON(this);
         }
     }
     
@@ -38,12 +107,12 @@ public class AST {
             return this;
         }
         
+        void clear() {
+            items.clear();
+        }
+        
         public String toJSON() {
-            return "["
-                    + items.stream()
-                          .map(ItemNode::toJSON)
-                          .collect(Collectors.joining(","))
-                    + "]";
+            return JsonWriter.toJSON(this);
         }
     }
     
@@ -60,7 +129,7 @@ public class AST {
         public PropertyNode addValue(Node v) { value = v; return this; }
         
         public String toJSON() {
-            return "\"" + key + "\":" + value.toJSON();
+            return JsonWriter.toJSON(this);
         }
     }
     
@@ -73,7 +142,7 @@ public class AST {
         public ItemNode addValue(Node i) { item = i; return this; }
         
         public String toJSON() {
-            return item.toJSON();
+            return JsonWriter.toJSON(this);
         }
     }
     
@@ -85,7 +154,7 @@ public class AST {
         public String getValue() { return value; }
         
         public String toJSON() {
-            return "\"" + value + "\"";
+            return JsonWriter.toJSON(this);
         }
     }
     
@@ -113,6 +182,42 @@ public class AST {
         }
     }
     
+    public static class LongNode implements Node {
+        private final long value;
+        
+        public LongNode(long v) { value = v; }
+        
+        public long getValue() { return value; }
+        
+        public String toJSON() {
+            return Long.toString(value);
+        }
+    }
+    
+    public static class DoubleNode implements Node {
+        private final double value;
+        
+        public DoubleNode(double v) { value = v; }
+        
+        public double getValue() { return value; }
+        
+        public String toJSON() {
+            return Double.toString(value);
+        }
+    }
+    
+    public static class BigNumberNode implements Node {
+        private final BigDecimal value;
+        
+        public BigNumberNode(BigDecimal v) { value = v; }
+        
+        public BigDecimal getValue() { return value; }
+        
+        public String toJSON() {
+            return value.toString();
+        }
+    }
+    
     public static class TrueNode implements Node {
         
         public boolean getValue() { return true; }
@@ -145,6 +250,9 @@ public class AST {
     public static StringNode newString(String s) { return new StringNode(s); }
     public static IntNode newInt(Integer i) { return new IntNode(i); }
     public static FloatNode newFloat(Float f) { return new FloatNode(f); }
+    public static LongNode newLong(long l) { return new LongNode(l); }
+    public static DoubleNode newDouble(double d) { return new DoubleNode(d); }
+    public static BigNumberNode newBigNumber(BigDecimal n) { return new BigNumberNode(n); }
     public static TrueNode newTrue() { return new TrueNode(); }
     public static FalseNode newFalse() { return new FalseNode(); }
     public static NullNode newNull() { return new NullNode(); }
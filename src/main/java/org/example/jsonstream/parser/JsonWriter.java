@@ -0,0 +1,435 @@
+package org.example.jsonstream.parser;
+
+import org.example.jsonstream.tokenizer.TokenConsumer;
+import org.example.jsonstream.tokenizer.TokenHandler;
+import org.example.jsonstream.tokenizer.Tokens;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Writes JSON, from an AST or straight from the tokens, as UTF-8 into
+// a buffer which is handed to the output whenever it fills up, so the
+// whole of it never has to be in memory at once, and each byte of it is
+// only written the once, however deep it is nested.
+//
+// It is compact unless it is asked to be pretty, and the strings (and
+// keys) are escaped properly, anything outside of the BMP is passed on
+// as it is, and a lone surrogate is written as an escape.
+//
+// As a TokenConsumer (or a TokenHandler, see asHandler()) it writes the
+// tokens as they come, a line per document when there are several of
+// them, and it flushes at the end of the tokens. What was written of a
+// value before an ErrorToken stays written, but the next document is
+// started from scratch, and a failure to write is thrown on as an
+// UncheckedIOException, since the consumer can't throw anything else.
+public class JsonWriter implements TokenConsumer, Flushable, Closeable {
+    
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE  = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] NULL  = { 'n', 'u', 'l', 'l' };
+    
+    // enough room for any one char, escaped or encoded
+    private static final int MAX_CHAR = 6;
+    
+    // where the buffer goes when it is full
+    private interface Sink {
+        void write(byte[] bytes, int length) throws IOException;
+        default void flush() throws IOException {}
+        default void close() throws IOException {}
+    }
+    
+    private final Sink sink;
+    private final byte[] buffer;
+    private int position;
+    
+    private byte[] indent;
+    
+    // for each container we are in, whether nothing has been written in
+    // it yet, and if the last thing written was a key
+    private boolean[] first = new boolean[16];
+    private int depth;
+    private boolean afterKey;
+    
+    public JsonWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+    
+    public JsonWriter(OutputStream out, int bufferSize) {
+        this(new Sink() {
+            public void write(byte[] bytes, int length) throws IOException { out.write(bytes, 0, length); }
+            public void flush() throws IOException { out.flush(); }
+            public void close() throws IOException { out.close(); }
+        }, bufferSize);
+    }
+    
+    public JsonWriter(WritableByteChannel out) {
+        this(new Sink() {
+            public void write(byte[] bytes, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+                while (buffer.hasRemaining()) out.write(buffer);
+            }
+            public void close() throws IOException { out.close(); }
+        }, DEFAULT_BUFFER_SIZE);
+    }
+    
+    // the buffer only ever ends at the end of a char, so it can always be
+    // decoded as it is, into chars which are reused just like the bytes
+    public JsonWriter(Appendable out) {
+        this(new Sink() {
+            final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            final CharBuffer chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            
+            public void write(byte[] bytes, int length) throws IOException {
+                chars.clear();
+                decoder.reset();
+                decoder.decode(ByteBuffer.wrap(bytes, 0, length), chars, true);
+                out.append(chars.flip());
+            }
+            public void flush() throws IOException {
+                if (out instanceof Flushable f) f.flush();
+            }
+            public void close() throws IOException {
+                if (out instanceof Closeable c) c.close();
+            }
+        }, DEFAULT_BUFFER_SIZE);
+    }
+    
+    private JsonWriter(Sink sink, int bufferSize) {
+        if (bufferSize < MAX_CHAR) throw new IllegalArgumentException("bufferSize must be at least " + MAX_CHAR + ", not " + bufferSize);
+        this.sink = sink;
+        this.buffer = new byte[bufferSize];
+    }
+    
+    // the whole of the node as a String, which is what AST.toJSON() does
+    public static String toJSON(AST.Node node) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(out);
+        writer.value(node);
+        writer.flushBuffer();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    // a line for each property and item, indented by two spaces per level
+    public JsonWriter withPrettyPrinting() {
+        return withIndent("  ");
+    }
+    
+    public JsonWriter withIndent(String indent) {
+        this.indent = indent.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+    
+    public JsonWriter write(AST.Node node) throws IOException {
+        try {
+            value(node);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return this;
+    }
+    
+    public void flush() throws IOException {
+        try {
+            flushBuffer();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        sink.flush();
+    }
+    
+    public void close() throws IOException {
+        flush();
+        sink.close();
+    }
+    
+    // AST
+    
+    private void value(AST.Node node) {
+        if (node instanceof AST.ObjectNode object) {
+            startObject();
+            for (AST.PropertyNode prop : object.properties()) {
+                key(prop.getKey());
+                value(prop.getValue());
+            }
+            endObject();
+        } else if (node instanceof AST.ArrayNode array) {
+            startArray();
+            for (AST.ItemNode item : array.items()) value(item.getValue());
+            endArray();
+        } else if (node instanceof AST.PropertyNode prop) {
+            key(prop.getKey());
+            value(prop.getValue());
+        } else if (node instanceof AST.ItemNode item) {
+            value(item.getValue());
+        } else {
+            separate();
+            scalar(node);
+        }
+    }
+    
+    private void scalar(AST.Node node) {
+        if (node instanceof AST.StringNode string) {
+            string(string.getValue());
+        } else if (node instanceof AST.IntNode number) {
+            integer(number.getValue());
+        } else if (node instanceof AST.LongNode number) {
+            integer(number.getValue());
+        } else if (node instanceof AST.FloatNode number) {
+            raw(number.getValue().toString());
+        } else if (node instanceof AST.DoubleNode number) {
+            raw(Double.toString(number.getValue()));
+        } else if (node instanceof AST.BigNumberNode number) {
+            raw(number.getValue().toString());
+        } else if (node instanceof AST.TrueNode) {
+            literal(TRUE);
+        } else if (node instanceof AST.FalseNode) {
+            literal(FALSE);
+        } else if (node instanceof AST.NullNode) {
+            literal(NULL);
+        } else {
+            // whatever it is, it knows best
+            raw(node.toJSON());
+        }
+    }
+    
+    // structure
+    
+    private void startObject() { open('{'); }
+    private void endObject() { close('}'); }
+    private void startArray() { open('['); }
+    private void endArray() { close(']'); }
+    
+    private void open(char bracket) {
+        separate();
+        put(bracket);
+        if (++depth == first.length) first = Arrays.copyOf(first, depth * 2);
+        first[depth] = true;
+    }
+    
+    private void close(char bracket) {
+        if (depth == 0) return;
+        boolean empty = first[depth];
+        depth--;
+        if (!empty) newLine();
+        put(bracket);
+    }
+    
+    private void key(String key) {
+        separate();
+        string(key);
+        put(':');
+        if (indent != null) put(' ');
+        afterKey = true;
+    }
+    
+    // the comma and the line break before a key or a value, unless
+    // it's the value of the key we just wrote
+    private void separate() {
+        if (afterKey) {
+            afterKey = false;
+            return;
+        }
+        if (depth == 0) return;
+        if (first[depth]) first[depth] = false;
+        else put(',');
+        newLine();
+    }
+    
+    private void newLine() {
+        if (indent == null) return;
+        put('\n');
+        for (int i = 0; i < depth; i++) {
+            for (byte b : indent) put((char) b);
+        }
+    }
+    
+    private void endDocument() {
+        depth = 0;
+        afterKey = false;
+        put('\n');
+    }
+    
+    private void reset() {
+        depth = 0;
+        afterKey = false;
+    }
+    
+    // values
+    
+    private void string(String value) {
+        if (value == null) {
+            literal(NULL);
+            return;
+        }
+        put('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (position + MAX_CHAR > buffer.length) flushBuffer();
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buffer[position++] = (byte) c;
+                } else {
+                    buffer[position++] = '\\';
+                    switch (c) {
+                        case '"'  -> buffer[position++] = '"';
+                        case '\\' -> buffer[position++] = '\\';
+                        case '\b' -> buffer[position++] = 'b';
+                        case '\f' -> buffer[position++] = 'f';
+                        case '\n' -> buffer[position++] = 'n';
+                        case '\r' -> buffer[position++] = 'r';
+                        case '\t' -> buffer[position++] = 't';
+                        default   -> unicodeEscape(c);
+                    }
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (cp >> 18));
+                buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // it can't be encoded, but it can be escaped
+                buffer[position++] = '\\';
+                unicodeEscape(c);
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        put('"');
+    }
+    
+    // the u and the four digits, the backslash is already written
+    private void unicodeEscape(char c) {
+        buffer[position++] = 'u';
+        buffer[position++] = HEX[(c >> 12) & 0xF];
+        buffer[position++] = HEX[(c >> 8) & 0xF];
+        buffer[position++] = HEX[(c >> 4) & 0xF];
+        buffer[position++] = HEX[c & 0xF];
+    }
+    
+    // the digits straight into the buffer, worked out as a negative
+    // number so that Long.MIN_VALUE works too
+    private void integer(long value) {
+        if (buffer.length < 20) {
+            raw(Long.toString(value));
+            return;
+        }
+        if (position + 20 > buffer.length) flushBuffer();
+        long n = value;
+        if (n < 0) buffer[position++] = '-';
+        else n = -n;
+        int digits = 1;
+        for (long rest = n / 10; rest != 0; rest /= 10) digits++;
+        int at = position + digits;
+        position = at;
+        do {
+            buffer[--at] = (byte) ('0' - (n % 10));
+            n /= 10;
+        } while (n != 0);
+    }
+    
+    private void literal(byte[] literal) {
+        if (position + literal.length > buffer.length) flushBuffer();
+        System.arraycopy(literal, 0, buffer, position, literal.length);
+        position += literal.length;
+    }
+    
+    // something which is already ASCII, like a number
+    private void raw(String value) {
+        for (int i = 0; i < value.length(); i++) put(value.charAt(i));
+    }
+    
+    private void put(char c) {
+        if (position == buffer.length) flushBuffer();
+        buffer[position++] = (byte) c;
+    }
+    
+    private void flushBuffer() {
+        if (position == 0) return;
+        try {
+            sink.write(buffer, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position = 0;
+    }
+    
+    // tokens
+    
+    public void consumeToken(Tokens.NoToken token) { flushTokens(); }
+    public void consumeToken(Tokens.ErrorToken token) { reset(); }
+    public void consumeToken(Tokens.NeedMoreInput token) {}
+    public void consumeToken(Tokens.EndDocument token) { endDocument(); }
+    public void consumeToken(Tokens.StartObject token) { startObject(); }
+    public void consumeToken(Tokens.EndObject token) { endObject(); }
+    public void consumeToken(Tokens.StartProperty token) {}
+    public void consumeToken(Tokens.EndProperty token) {}
+    public void consumeToken(Tokens.StartArray token) { startArray(); }
+    public void consumeToken(Tokens.EndArray token) { endArray(); }
+    public void consumeToken(Tokens.StartItem token) {}
+    public void consumeToken(Tokens.EndItem token) {}
+    public void consumeToken(Tokens.AddKey token) { key(token.getValue()); }
+    public void consumeToken(Tokens.AddString token) { separate(); string(token.getValue()); }
+    public void consumeToken(Tokens.AddInt token) { separate(); integer(token.getValue()); }
+    public void consumeToken(Tokens.AddFloat token) { separate(); raw(token.getValue().toString()); }
+    public void consumeToken(Tokens.AddLong token) { separate(); integer(token.getValue()); }
+    public void consumeToken(Tokens.AddDouble token) { separate(); raw(Double.toString(token.getValue())); }
+    public void consumeToken(Tokens.AddBigNumber token) { separate(); raw(token.getValue().toString()); }
+    public void consumeToken(Tokens.AddTrue token) { separate(); literal(TRUE); }
+    public void consumeToken(Tokens.AddFalse token) { separate(); literal(FALSE); }
+    public void consumeToken(Tokens.AddNull token) { separate(); literal(NULL); }
+    
+    private void flushTokens() {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // for Tokenizer.drive(), which writes the same from the values
+    // themselves, without any tokens being made
+    public TokenHandler asHandler() {
+        return handler;
+    }
+    
+    private final TokenHandler handler = new TokenHandler() {
+        public void startObject() { JsonWriter.this.startObject(); }
+        public void endObject() { JsonWriter.this.endObject(); }
+        public void startArray() { JsonWriter.this.startArray(); }
+        public void endArray() { JsonWriter.this.endArray(); }
+        public void addKey(String key) { key(key); }
+        
+        public void addString(String value) { separate(); string(value); }
+        public void addInt(int value) { separate(); integer(value); }
+        public void addLong(long value) { separate(); integer(value); }
+        public void addDouble(double value) { separate(); raw(Double.toString(value)); }
+        public void addBigNumber(BigDecimal value) { separate(); raw(value.toString()); }
+        public void addTrue() { separate(); literal(TRUE); }
+        public void addFalse() { separate(); literal(FALSE); }
+        public void addNull() { separate(); literal(NULL); }
+        
+        public void endDocument() { JsonWriter.this.endDocument(); }
+        public void error(String msg) { reset(); }
+    };
+}
@@ -0,0 +1,241 @@
+package org.example.jsonstream.parser;
+
+import org.example.jsonstream.tokenizer.ByteScanner;
+import org.example.jsonstream.tokenizer.Scans;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+
+// An AST which is only built as far as anyone looks at it.
+//
+// Parsing just finds where the root value is, every object and array
+// is then nothing but its offset into the source until something asks
+// for its properties or items, at which point that one container is
+// read, and the containers in it are skipped over (using the structural
+// index, so without looking at anything in them) and become offsets in
+// turn. The strings are not even decoded until their value is wanted,
+// so the parts of the document nobody looks at cost next to nothing.
+//
+// The nodes are the AST nodes, so anything which works on an AST works
+// on one of these as well. Since most of it is never read, mistakes in
+// the source are only found when the part they are in is looked at,
+// which throws an IllegalArgumentException (and goes on throwing it
+// each time that container is looked at). The source must not change
+// while there are nodes of it around, and they can't be shared between
+// threads, since they all read from the one scanner.
+public class LazyAST {
+    
+    private final ByteScanner scanner;
+    
+    private LazyAST(ByteBuffer source) {
+        this.scanner = ByteScanner.indexed(source);
+    }
+    
+    public static AST.Node parse(ByteBuffer source) {
+        return new LazyAST(source).root();
+    }
+    
+    public static AST.Node parse(String source) {
+        return parse(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    // the containers, read the first time anything looks in them
+    
+    static class ObjectNode extends AST.ObjectNode {
+        private LazyAST source;
+        private final long start;
+        private boolean loading;
+        // why it couldn't be read, for everyone who asks after
+        private IllegalArgumentException failure;
+        
+        ObjectNode(LazyAST source, long start) {
+            this.source = source;
+            this.start  = start;
+        }
+        
+        private void load() {
+            if (failure != null) throw failure;
+            // reading it adds the properties, which comes back here
+            if (source == null || loading) return;
+            loading = true;
+            try {
+                source.readObject(this, start);
+                source = null;
+            } catch (IllegalArgumentException e) {
+                // none of what was read before it went wrong
+                clear();
+                failure = e;
+                throw e;
+            } finally {
+                loading = false;
+            }
+        }
+        
+        public List<AST.PropertyNode> properties() { load(); return super.properties(); }
+        public AST.Node get(String key) { load(); return super.get(key); }
+        public boolean has(String key) { load(); return super.has(key); }
+        
+        public AST.ObjectNode addProperty(AST.PropertyNode prop) {
+            load();
+            return super.addProperty(prop);
+        }
+    }
+    
+    static class ArrayNode extends AST.ArrayNode {
+        private LazyAST source;
+        private final long start;
+        private boolean loading;
+        private IllegalArgumentException failure;
+        
+        ArrayNode(LazyAST source, long start) {
+            this.source = source;
+            this.start  = start;
+        }
+        
+        private void load() {
+            if (failure != null) throw failure;
+            if (source == null || loading) return;
+            loading = true;
+            try {
+                source.readArray(this, start);
+                source = null;
+            } catch (IllegalArgumentException e) {
+                clear();
+                failure = e;
+                throw e;
+            } finally {
+                loading = false;
+            }
+        }
+        
+        public List<AST.ItemNode> items() { load(); return super.items(); }
+        
+        public AST.ArrayNode addItem(AST.ItemNode item) {
+            load();
+            return super.addItem(item);
+        }
+    }
+    
+    // decoded the first time the value is asked for
+    static class StringNode extends AST.StringNode {
+        private Supplier<String> content;
+        private String value;
+        
+        StringNode(Supplier<String> content) {
+            super(null);
+            this.content = content;
+        }
+        
+        public String getValue() {
+            if (content != null) {
+                value = content.get();
+                content = null;
+            }
+            return value;
+        }
+    }
+    
+    // reading
+    
+    private AST.Node root() {
+        scanner.seek(0);
+        // the same as the Tokenizer, which only takes a container
+        if (scanner.peekScan() != Scans.ScanType.OPERATOR) {
+            throw error("The root node must be either an Object({}) or an Array([])");
+        }
+        AST.Node root = value();
+        if (scanner.scan() != Scans.ScanType.END) throw error("Expected the end of the input");
+        return root;
+    }
+    
+    private void readObject(AST.ObjectNode node, long start) {
+        scanner.seek(start + 1);
+        if (isClose('}')) return;
+        while (true) {
+            if (scanner.scan() != Scans.ScanType.STRING) throw error("Expected a key");
+            String key = scanner.getScanContent();
+            expect(':');
+            node.addProperty(AST.newProperty().addKey(key).addValue(value()));
+            if (!next('}')) return;
+        }
+    }
+    
+    private void readArray(AST.ArrayNode node, long start) {
+        scanner.seek(start + 1);
+        if (isClose(']')) return;
+        while (true) {
+            node.addItem(AST.newItem(value()));
+            if (!next(']')) return;
+        }
+    }
+    
+    private AST.Node value() {
+        Scans.ScanType scan = scanner.peekScan();
+        switch (scan) {
+            case OPERATOR -> {
+                int c = scanner.getScanChar();
+                if (c != '{' && c != '[') throw error("Expected a value");
+                long start = scanner.getScanStart();
+                if (scanner.skipValue() != Scans.ScanType.OPERATOR) throw error("Bad value");
+                return c == '{' ? new ObjectNode(this, start) : new ArrayNode(this, start);
+            }
+            case STRING -> {
+                scanner.scan();
+                return new StringNode(scanner.getDeferredScanContent());
+            }
+            case INTEGER, FLOAT -> {
+                scanner.scan();
+                // the same as the Tokenizer would make of it
+                if (scan == Scans.ScanType.INTEGER && scanner.isScanLong()) {
+                    long value = scanner.getScanLong();
+                    return value == (int) value ? AST.newInt((int) value) : AST.newLong(value);
+                }
+                return AST.newDouble(scanner.getScanDouble());
+            }
+            case KEYWORD -> {
+                scanner.scan();
+                return switch (scanner.getScanChar()) {
+                    case 't' -> AST.newTrue();
+                    case 'f' -> AST.newFalse();
+                    default  -> AST.newNull();
+                };
+            }
+            default -> throw error("Expected a value");
+        }
+    }
+    
+    // true (and past it) if the container is closed right away
+    private boolean isClose(int close) {
+        if (scanner.peekScan() == Scans.ScanType.OPERATOR && scanner.getScanChar() == close) {
+            scanner.scan();
+            return true;
+        }
+        return false;
+    }
+    
+    // past the comma, and true if there is more to come
+    private boolean next(int close) {
+        if (scanner.scan() == Scans.ScanType.OPERATOR) {
+            if (scanner.getScanChar() == ',') return true;
+            if (scanner.getScanChar() == close) return false;
+        }
+        throw error("Expected (,) or (" + (char) close + ")");
+    }
+    
+    private void expect(int operator) {
+        if (scanner.scan() != Scans.ScanType.OPERATOR || scanner.getScanChar() != operator) {
+            throw error("Expected (" + (char) operator + ")");
+        }
+    }
+    
+    private IllegalArgumentException error(String msg) {
+        String found = switch (scanner.getScanType()) {
+            case END   -> "the end of the input";
+            case ERROR -> scanner.getScanValue();
+            default    -> "(" + scanner.getScanValue() + ")";
+        };
+        return new IllegalArgumentException(msg + ", found " + found + " at " + scanner.getScanStart());
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.jsonstream.parser;
+
+import java.util.ArrayList;
+
+// The nodes of documents we are done with, to build the next one out
+// of, for when lots of small documents are parsed, used and thrown away
+// one after the other (see Parser.withNodePool), so they don't all have
+// to be made from scratch and collected again.
+//
+// Only the nodes which make up the structure are reused, the objects,
+// arrays, properties and items, along with their lists. The values
+// can't be changed once they are made, so true, false and null are
+// each the one node, and everything else is made as usual.
+//
+// It is not thread safe, forThread() gives each thread one of its own,
+// and it keeps at most limit nodes of each kind, so one huge document
+// doesn't mean holding on to all of its nodes forever.
+public class NodePool {
+    
+    public static final int DEFAULT_LIMIT = 16 * 1024;
+    
+    private static final ThreadLocal<NodePool> POOLS = ThreadLocal.withInitial(NodePool::new);
+    
+    private static final AST.TrueNode TRUE = new AST.TrueNode();
+    private static final AST.FalseNode FALSE = new AST.FalseNode();
+    private static final AST.NullNode NULL = new AST.NullNode();
+    
+    private final int limit;
+    
+    private final ArrayList<AST.ObjectNode> objects = new ArrayList<>();
+    private final ArrayList<AST.ArrayNode> arrays = new ArrayList<>();
+    private final ArrayList<AST.PropertyNode> properties = new ArrayList<>();
+    private final ArrayList<AST.ItemNode> items = new ArrayList<>();
+    
+    // how many nodes were handed out again, rather than made
+    private long reused;
+    
+    public NodePool() {
+        this(DEFAULT_LIMIT);
+    }
+    
+    public NodePool(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit can't be negative, not " + limit);
+        this.limit = limit;
+    }
+    
+    public static NodePool forThread() {
+        return POOLS.get();
+    }
+    
+    public long getReused() { return reused; }
+    
+    // how many are waiting to be reused
+    public int available() {
+        return objects.size() + arrays.size() + properties.size() + items.size();
+    }
+    
+    public AST.ObjectNode newObject() {
+        if (objects.isEmpty()) return AST.newObject();
+        reused++;
+        return objects.remove(objects.size() - 1);
+    }
+    
+    public AST.ArrayNode newArray() {
+        if (arrays.isEmpty()) return AST.newArray();
+        reused++;
+        return arrays.remove(arrays.size() - 1);
+    }
+    
+    public AST.PropertyNode newProperty() {
+        if (properties.isEmpty()) return AST.newProperty();
+        reused++;
+        return properties.remove(properties.size() - 1);
+    }
+    
+    public AST.ItemNode newItem(AST.Node node) {
+        if (items.isEmpty()) return AST.newItem(node);
+        reused++;
+        return items.remove(items.size() - 1).addValue(node);
+    }
+    
+    public AST.TrueNode newTrue() { return TRUE; }
+    public AST.FalseNode newFalse() { return FALSE; }
+    public AST.NullNode newNull() { return NULL; }
+    
+    // give back the whole of a document, none of which can be used
+    // after this, only the plain AST nodes are kept, not any of the
+    // other kinds (like the ones from a LazyAST)
+    public void release(AST.Node node) {
+        if (node == null) return;
+        if (node.getClass() == AST.ObjectNode.class) {
+            AST.ObjectNode object = (AST.ObjectNode) node;
+            for (AST.PropertyNode prop : object.properties()) release(prop);
+            object.clear();
+            if (objects.size() < limit) objects.add(object);
+        } else if (node.getClass() == AST.ArrayNode.class) {
+            AST.ArrayNode array = (AST.ArrayNode) node;
+            for (AST.ItemNode item : array.items()) release(item);
+            array.clear();
+            if (arrays.size() < limit) arrays.add(array);
+        } else if (node.getClass() == AST.PropertyNode.class) {
+            AST.PropertyNode prop = (AST.PropertyNode) node;
+            release(prop.getValue());
+            prop.addKey(null).addValue(null);
+            if (properties.size() < limit) properties.add(prop);
+        } else if (node.getClass() == AST.ItemNode.class) {
+            AST.ItemNode item = (AST.ItemNode) node;
+            release(item.getValue());
+            item.addValue(null);
+            if (items.size() < limit) items.add(item);
+        }
+    }
+}
@@ -1,13 +1,42 @@
 package org.example.jsonstream.parser;
 
 import org.example.jsonstream.tokenizer.*;
+import java.math.BigDecimal;
 import java.util.*;
 
 public class Parser implements TokenConsumer {
 
     private AST.Node root;
 
-    private final Stack<AST.Node> stack = new Stack<>();
+    private final ArrayDeque<AST.Node> stack = new ArrayDeque<>();
+    
+    // where the objects and arrays come from, and go back to, or
+    // null to make them all from scratch
+    private NodePool pool;
+    
+    // build the documents out of the nodes in the pool, which the
+    // last document goes back to on reset(), so it can't be used
+    // after that, and the pool can't be shared between threads
+    public Parser withNodePool(NodePool pool) {
+        this.pool = pool;
+        return this;
+    }
+    
+    public Parser withNodePool() {
+        return withNodePool(NodePool.forThread());
+    }
+    
+    // ready for the next document, with the same stack, and the last
+    // document goes back in the pool (if there is one)
+    public void reset() {
+        if (pool != null) {
+            pool.release(root);
+            // anything left over is part of a document which never finished
+            if (!stack.isEmpty()) pool.release(stack.peekLast());
+        }
+        root = null;
+        stack.clear();
+    }
     
     public boolean hasRoot() {
         return root != null;
@@ -19,43 +48,23 @@ public class Parser implements TokenConsumer {
     // TODO - these are both error conditions
     //  so do something useful here
     public void consumeToken(Tokens.NoToken token) {}
-    public void consumeToken(Tokens.ErrorToken token) {}
     
-    // consume the tokens we care about
+    // whatever we had of the bad value is dropped, so if the tokenizer
+    // recovers the next one starts from scratch
+    public void consumeToken(Tokens.ErrorToken token) { stack.clear(); }
     
-    public void consumeToken(Tokens.StartObject token) {
-        AST.ObjectNode o = AST.newObject();
-        if ( !stack.empty() ) {
-            addValue(o);
-        }
-        stack.push(o);
-    }
+    // we pick up where we left off with the next token
+    public void consumeToken(Tokens.NeedMoreInput token) {}
     
-    public void consumeToken(Tokens.EndObject token) {
-        if ( !stack.empty() ) {
-            AST.Node top = stack.pop();
-            if ( stack.empty() ) {
-                root = top;
-            }
-        }
-    }
+    // the root is complete, the next document replaces it
+    public void consumeToken(Tokens.EndDocument token) {}
     
-    public void consumeToken(Tokens.StartArray token) {
-        AST.ArrayNode a = AST.newArray();
-        if ( !stack.empty() ) {
-            addValue(a);
-        }
-        stack.push(a);
-    }
+    // consume the tokens we care about
     
-    public void consumeToken(Tokens.EndArray token) {
-        if ( !stack.empty() ) {
-            AST.Node top = stack.pop();
-            if ( stack.empty() ) {
-                root = top;
-            }
-        }
-    }
+    public void consumeToken(Tokens.StartObject token) { startNode(newObject()); }
+    public void consumeToken(Tokens.EndObject token) { endNode(); }
+    public void consumeToken(Tokens.StartArray token) { startNode(newArray()); }
+    public void consumeToken(Tokens.EndArray token) { endNode(); }
     
     // skip a few which are not important
     public void consumeToken(Tokens.StartProperty token) {}
@@ -63,10 +72,7 @@ public class Parser implements TokenConsumer {
     public void consumeToken(Tokens.StartItem token) {}
     public void consumeToken(Tokens.EndItem token) {}
     
-    public void consumeToken(Tokens.AddKey token) {
-        AST.PropertyNode p = AST.newProperty().addKey(token.getValue());
-        stack.push(p);
-    }
+    public void consumeToken(Tokens.AddKey token) { addKey(token.getValue()); }
     
     public void consumeToken(Tokens.AddString token) {
         addValue(AST.newString(token.getValue()));
@@ -80,16 +86,116 @@ public class Parser implements TokenConsumer {
         addValue(AST.newFloat(token.getValue()));
     }
     
-    public void consumeToken(Tokens.AddTrue token) { addValue(AST.newTrue()); }
-    public void consumeToken(Tokens.AddFalse token) { addValue(AST.newFalse()); }
+    public void consumeToken(Tokens.AddLong token) {
+        addValue(AST.newLong(token.getValue()));
+    }
+    
+    public void consumeToken(Tokens.AddDouble token) {
+        addValue(AST.newDouble(token.getValue()));
+    }
+    
+    public void consumeToken(Tokens.AddBigNumber token) {
+        addValue(AST.newBigNumber(token.getValue()));
+    }
+    
+    public void consumeToken(Tokens.AddTrue token) { addValue(newTrue()); }
+    public void consumeToken(Tokens.AddFalse token) { addValue(newFalse()); }
     public void consumeToken(Tokens.AddNull token) {
-        addValue(AST.newNull());
+        addValue(newNull());
     }
 
+    // the same as consuming each of the tokens, but straight from
+    // the cursor so the tokens never have to be made at all, this
+    // stops at the first terminal (NoToken, ErrorToken, etc.)
+    public void parse(TokenCursor cursor) {
+        Tokens.Type type;
+        while (!(type = cursor.next()).isTerminal()) {
+            switch (type) {
+                case START_OBJECT   -> startNode(newObject());
+                case START_ARRAY    -> startNode(newArray());
+                case END_OBJECT,
+                     END_ARRAY      -> endNode();
+                case ADD_KEY        -> addKey(cursor.stringValue());
+                case ADD_STRING     -> addValue(AST.newString(cursor.stringValue()));
+                case ADD_INT        -> addValue(AST.newInt(cursor.intValue()));
+                case ADD_LONG       -> addValue(AST.newLong(cursor.longValue()));
+                case ADD_DOUBLE     -> addValue(AST.newDouble(cursor.doubleValue()));
+                case ADD_FLOAT      -> addValue(AST.newFloat((float) cursor.doubleValue()));
+                case ADD_BIG_NUMBER -> addValue(AST.newBigNumber(cursor.bigNumberValue()));
+                case ADD_TRUE       -> addValue(newTrue());
+                case ADD_FALSE      -> addValue(newFalse());
+                case ADD_NULL       -> addValue(newNull());
+                default             -> {}
+            }
+        }
+        if (type == Tokens.Type.ERROR_TOKEN) stack.clear();
+    }
+    
+    // the batch is read as a cursor, so it stops at a terminal just
+    // like consuming them would, and picks up again with the next batch
+    public void consumeBatch(TokenBatch batch) {
+        batch.rewind();
+        parse(batch);
+    }
+    
+    // for Tokenizer.drive(), which builds the same nodes from the
+    // values themselves, and it is always the same handler so it
+    // can be driven again after running out of input
+    public TokenHandler asHandler() {
+        return handler;
+    }
+    
+    private final TokenHandler handler = new TokenHandler() {
+        public void startObject() { startNode(newObject()); }
+        public void endObject() { endNode(); }
+        public void startArray() { startNode(newArray()); }
+        public void endArray() { endNode(); }
+        public void addKey(String key) { Parser.this.addKey(key); }
+        
+        public void addString(String value) { addValue(AST.newString(value)); }
+        public void addInt(int value) { addValue(AST.newInt(value)); }
+        public void addLong(long value) { addValue(AST.newLong(value)); }
+        public void addDouble(double value) { addValue(AST.newDouble(value)); }
+        public void addBigNumber(BigDecimal value) { addValue(AST.newBigNumber(value)); }
+        public void addTrue() { addValue(newTrue()); }
+        public void addFalse() { addValue(newFalse()); }
+        public void addNull() { addValue(newNull()); }
+        
+        public void error(String msg) { stack.clear(); }
+    };
+    
+    private AST.ObjectNode newObject() { return pool != null ? pool.newObject() : AST.newObject(); }
+    private AST.ArrayNode newArray() { return pool != null ? pool.newArray() : AST.newArray(); }
+    private AST.PropertyNode newProperty() { return pool != null ? pool.newProperty() : AST.newProperty(); }
+    private AST.ItemNode newItem(AST.Node node) { return pool != null ? pool.newItem(node) : AST.newItem(node); }
+    private AST.Node newTrue() { return pool != null ? pool.newTrue() : AST.newTrue(); }
+    private AST.Node newFalse() { return pool != null ? pool.newFalse() : AST.newFalse(); }
+    private AST.Node newNull() { return pool != null ? pool.newNull() : AST.newNull(); }
+    
+    private void startNode(AST.Node node) {
+        if ( !stack.isEmpty() ) {
+            addValue(node);
+        }
+        stack.push(node);
+    }
+    
+    private void endNode() {
+        if ( !stack.isEmpty() ) {
+            AST.Node top = stack.pop();
+            if ( stack.isEmpty() ) {
+                root = top;
+            }
+        }
+    }
+    
+    private void addKey(String key) {
+        stack.push(newProperty().addKey(key));
+    }
+    
     private void addValue (AST.Node node) {
         if (stack.peek() instanceof AST.ArrayNode) {
             AST.ArrayNode curr = (AST.ArrayNode) stack.peek();
-            curr.addItem( AST.newItem( node ) );
+            curr.addItem( newItem( node ) );
         } else if (stack.peek() instanceof AST.PropertyNode) {
             AST.PropertyNode prop = (AST.PropertyNode) stack.pop();
             if (stack.peek() instanceof AST.ObjectNode) {
@@ -97,10 +203,10 @@ public class Parser implements TokenConsumer {
                 prop.addValue(node);
                 curr.addProperty(prop);
             } else {
-                // TODO - throw an error here
+                throw new IllegalStateException("A property has to be in an object, not in " + stack.peek());
             }
         } else {
-            // TODO - throw an error here
+            throw new IllegalStateException("A value has to be in an array or a property, not in " + stack.peek());
         }
     }
 }
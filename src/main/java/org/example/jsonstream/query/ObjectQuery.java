@@ -1,18 +1,35 @@
 package org.example.jsonstream.query;
 
+import org.example.jsonstream.tokenizer.TokenBatch;
+import org.example.jsonstream.tokenizer.TokenConsumer;
+import org.example.jsonstream.tokenizer.TokenCursor;
 import org.example.jsonstream.tokenizer.TokenProducer;
+import org.example.jsonstream.tokenizer.TokenTape;
 import org.example.jsonstream.tokenizer.Tokens;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ObjectQuery {
     
     private final Set<String> keys = new HashSet<>();
-    private final Map<String, List<Tokens.Token>> results = new HashMap<>();
+    private final Map<String, TokenTape> results = new HashMap<>();
     
+    // anything that went wrong while it was a consumer
+    private QueryException failure;
+    
+    // the tokens of the value, made fresh from the tape each time
     public List<Tokens.Token> getResultsFor(String key) {
-        return results.get(key);
+        TokenTape tape = getTapeFor(key);
+        return tape == null ? null : tape.stream().collect(Collectors.toList());
+    }
+    
+    // the value as a tape, rewound so it can be replayed
+    public TokenTape getTapeFor(String key) {
+        TokenTape tape = results.get(key);
+        if (tape != null) tape.rewind();
+        return tape;
     }
     
     public ObjectQuery captureValueOf(String key) {
@@ -20,8 +37,26 @@ public class ObjectQuery {
         return this;
     }
     
+    // the query as a TokenConsumer, for when the tokens are pushed to
+    // it (by a TokenBroadcaster say) rather than it pulling them, it is
+    // satisfied as soon as it has captured all of the keys, and then
+    // finish() will throw anything that went wrong along the way
+    public TokenConsumer asConsumer() {
+        return consumer;
+    }
+    
+    public void finish() throws QueryException {
+        if (failure != null) throw failure;
+    }
+    
     public void execute(TokenProducer tokenizer) throws QueryException {
         
+        // a Tokenizer can skip making the tokens we don't want
+        if (tokenizer instanceof TokenCursor) {
+            execute((TokenCursor) tokenizer);
+            return;
+        }
+        
         Tokens.Token startObjectToken = tokenizer.produceToken();
         
         if (!(startObjectToken instanceof Tokens.StartObject)) {
@@ -81,17 +116,20 @@ public class ObjectQuery {
         // collect all the tokens until the END_PROPERTY
         // at the same depth as we started.
         int depth = startPropToken.getContextDepth();
-        List<Tokens.Token> valueTokens = tokenizer.stream()
-                                             .takeWhile((t) -> t.getType() != Tokens.Type.END_PROPERTY
-                                                                   || t.getContextDepth() > depth)
-                                             .collect(Collectors.toList());
+        Stream<Tokens.Token> valueTokens = tokenizer.stream()
+                                               .takeWhile((t) -> t.getType() != Tokens.Type.END_PROPERTY
+                                                                     || t.getContextDepth() > depth);
         
-        // we collect these if we need them or not
+        // we go through these if we need them or not
         // because we need to advance the tokenizer
-        // so if we don't need them, we simply do
-        // nothing, on purpose
+        // (a TokenCursor can skip them instead) but
+        // we only record the ones we need
         if (keys.contains(key)) {
-            results.put(key, valueTokens);
+            TokenTape tape = new TokenTape();
+            valueTokens.forEach(tape::append);
+            results.put(key, tape);
+        } else {
+            valueTokens.forEach((t) -> {});
         }
         
         // and finally we return empty()
@@ -99,4 +137,144 @@ public class ObjectQuery {
         // (:
         return Optional.empty();
     }
+    
+    private void execute(TokenCursor cursor) throws QueryException {
+        
+        if (cursor.next() != Tokens.Type.START_OBJECT) {
+            throw new QueryException("ObjectQuery must start with an StartObject token, not "+cursor.currentToken().getName());
+        }
+        
+        while (true) {
+            Tokens.Type type = cursor.next();
+            if (type == Tokens.Type.END_OBJECT) return;
+            if (type != Tokens.Type.START_PROPERTY || cursor.next() != Tokens.Type.ADD_KEY) {
+                throw new QueryException("Expected EndObject token after the property, not " + cursor.currentType());
+            }
+            
+            // we don't need it, so we skip it without
+            // making a single token
+            if (!keys.contains(cursor.currentKey())) {
+                cursor.skipValue();
+                if (cursor.next() != Tokens.Type.END_PROPERTY) {
+                    throw new QueryException("Expected EndProperty token after the value, not " + cursor.currentType());
+                }
+                continue;
+            }
+            
+            // same as above, all the tokens until the END_PROPERTY
+            // at the same depth
+            int depth = cursor.depth();
+            TokenTape valueTokens = new TokenTape();
+            results.put(cursor.currentKey(), valueTokens);
+            
+            while (!(type = cursor.next()).isTerminal()
+                       && (type != Tokens.Type.END_PROPERTY || cursor.depth() >= depth)) {
+                valueTokens.append(cursor);
+            }
+        }
+    }
+    
+    private enum State { START, IN_OBJECT, KEY, VALUE, DONE }
+    
+    private final Consumer consumer = new Consumer();
+    
+    // the same as execute() above, but a token at a time
+    private final class Consumer implements TokenConsumer {
+        private State state = State.START;
+        // the value being captured, or null if we don't want it
+        private TokenTape tape;
+        private int depth;
+        
+        public boolean isSatisfied() {
+            return state == State.DONE;
+        }
+        
+        // true if the token is part of a value we want
+        private boolean accept(Tokens.Type type, int depth, String key) {
+            // whatever comes next will carry on from here
+            if (type == Tokens.Type.NEED_MORE_INPUT) return false;
+            
+            switch (state) {
+                case START -> {
+                    if (type != Tokens.Type.START_OBJECT) {
+                        fail("ObjectQuery must start with an StartObject token, not " + type);
+                    } else {
+                        state = State.IN_OBJECT;
+                    }
+                }
+                case IN_OBJECT -> {
+                    if (type == Tokens.Type.START_PROPERTY) {
+                        state = State.KEY;
+                    } else if (type == Tokens.Type.END_OBJECT) {
+                        state = State.DONE;
+                    } else {
+                        fail("Expected EndObject token after the property, not " + type);
+                    }
+                }
+                case KEY -> {
+                    if (type != Tokens.Type.ADD_KEY) {
+                        fail("Expected EndObject token after the property, not " + type);
+                    } else {
+                        this.depth = depth;
+                        tape = keys.contains(key) ? new TokenTape() : null;
+                        if (tape != null) results.put(key, tape);
+                        state = State.VALUE;
+                    }
+                }
+                case VALUE -> {
+                    if (type.isTerminal()) {
+                        fail("Expected EndProperty token after the value, not " + type);
+                    } else if (type == Tokens.Type.END_PROPERTY && depth < this.depth) {
+                        // no need to look any further once we have them all
+                        state = results.keySet().containsAll(keys) ? State.DONE : State.IN_OBJECT;
+                    } else {
+                        return tape != null;
+                    }
+                }
+                case DONE -> {}
+            }
+            return false;
+        }
+        
+        private void fail(String msg) {
+            failure = new QueryException(msg);
+            state = State.DONE;
+        }
+        
+        public void consumeBatch(TokenBatch batch) {
+            batch.rewind();
+            while (state != State.DONE && !batch.isDone()) {
+                Tokens.Type type = batch.next();
+                if (accept(type, batch.depth(), batch.currentKey())) tape.append(batch);
+            }
+        }
+        
+        public <T extends Tokens.Token> void consumeToken(T token) {
+            String key = token instanceof Tokens.AddKey ? ((Tokens.AddKey) token).getValue() : null;
+            if (accept(token.getType(), token.getContextDepth(), key)) tape.append(token);
+        }
+        
+        public void consumeToken(Tokens.NoToken token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.ErrorToken token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.NeedMoreInput token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.EndDocument token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.StartObject token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.EndObject token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.StartProperty token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.EndProperty token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.StartArray token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.EndArray token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.StartItem token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.EndItem token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddKey token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddString token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddInt token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddFloat token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddLong token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddDouble token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddBigNumber token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddTrue token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddFalse token) { consumeToken((Tokens.Token) token); }
+        public void consumeToken(Tokens.AddNull token) { consumeToken((Tokens.Token) token); }
+    }
 }
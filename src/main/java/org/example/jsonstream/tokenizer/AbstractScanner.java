@@ -0,0 +1,735 @@
+package org.example.jsonstream.tokenizer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+public abstract class AbstractScanner {
+    
+    private static final char[] TRUE  = { 't', 'r', 'u', 'e' };
+    private static final char[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final char[] NULL  = { 'n', 'u', 'l', 'l' };
+    
+    // the keywords packed a byte per char, see word()
+    private static final long TRUE_WORD  = pack(TRUE);
+    private static final long FALSE_WORD = pack(FALSE);
+    private static final long NULL_WORD  = pack(NULL);
+    
+    // what each char can start (or be part of), which is all
+    // ASCII, so anything past the table is OTHER
+    private static final byte OTHER      = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte OPERATOR   = 2;
+    private static final byte QUOTE      = 3;
+    private static final byte DIGIT      = 4;
+    private static final byte MINUS      = 5;
+    private static final byte KEYWORD    = 6;
+    
+    private static final byte[] CLASSES = new byte[256];
+    static {
+        for (char c : " \t\n\r".toCharArray()) CLASSES[c] = WHITESPACE;
+        for (char c : "{}[],:".toCharArray()) CLASSES[c] = OPERATOR;
+        for (char c = '0'; c <= '9'; c++) CLASSES[c] = DIGIT;
+        CLASSES['"'] = QUOTE;
+        CLASSES['-'] = MINUS;
+        CLASSES['t'] = CLASSES['f'] = CLASSES['n'] = KEYWORD;
+    }
+    
+    // every integer up to here is exact as a double
+    private static final long MAX_EXACT = 1L << 53;
+    // and so is every power of ten up to 10^22
+    private static final double[] POWERS_OF_TEN = {
+        1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // any more digits than this and we might overflow
+    private static final long LONG_GUARD = Long.MIN_VALUE / 10;
+    // past this the exponent is way out of range anyway
+    private static final int MAX_EXPONENT = 100_000;
+    
+    // the window of the source we can currently see,
+    // positions are relative to the start of the window
+    protected int limit;
+    protected int index;
+    
+    // set by skipString() if the string has any escapes in it,
+    // which is rare, so everything else is decoded in one go
+    protected boolean escaped;
+    
+    // the position reset() will rewind to, we must keep
+    // everything after it in the window when refilling
+    private int mark = -1;
+    
+    // the current scan, which is only ever the type and
+    // the offsets into the window, the value is decoded
+    // from the window if (and when) someone asks for it
+    private Scans.ScanType type;
+    private int start;
+    private int end;
+    private String error;
+    
+    // true if the current scan is a lookahead which has
+    // not been consumed yet, the index is already past it
+    private boolean peeked;
+    
+    // true if the current scan ran out of input before the
+    // end of it, but there is still more input to come
+    private boolean starved;
+    
+    // the number in the current scan is digits * 10^exponent,
+    // the digits are accumulated as a negative value (so that
+    // Long.MIN_VALUE fits) and they are only exact if the
+    // accumulation did not overflow
+    private boolean negative;
+    private long digits;
+    private int exponent;
+    private boolean overflow;
+    
+    // how deep skip() is in the value it is skipping, so that it
+    // can carry on from there if it runs out of input part way
+    private int skipDepth;
+    
+    // how far the window has moved along the input, so that
+    // we can tell where a scan is from the start of it
+    private long shifted;
+    
+    // resync() is part way through, and the last thing it went
+    // past was a line break
+    private boolean resyncing;
+    private boolean lineStart;
+    
+    // forget everything about the last input, for a subclass which
+    // is being restarted on some new input, the window is set by it
+    protected void restart() {
+        limit      = 0;
+        index      = 0;
+        escaped    = false;
+        mark       = -1;
+        type       = null;
+        start      = 0;
+        end        = 0;
+        error      = null;
+        peeked     = false;
+        starved    = false;
+        skipDepth  = 0;
+        shifted    = 0;
+        resyncing  = false;
+        lineStart  = false;
+    }
+    
+    // the source
+    
+    // the code unit (char or byte) at pos, pos is always < limit
+    protected abstract int charAt(int pos);
+    
+    // the text covering [start, end) of the window
+    protected abstract String decode(int start, int end);
+    
+    // a Scan object covering [start, end) of the window
+    protected abstract Scans.Scan constant(int start, int end, Scans.ScanType type);
+    
+    // slide the window along the input, keeping everything from
+    // keep onwards, and return how far the positions moved, or
+    // -1 if there is no more input and nothing was moved
+    protected abstract int refill(int keep);
+    
+    // false if more input could still arrive later on, in which
+    // case we can't tell if a scan which runs into the end of
+    // the window is complete, so we wait and scan it again
+    protected boolean isEndOfInput() {
+        return true;
+    }
+    
+    // the position of the closing bracket which takes us out of the
+    // depth containers we are in, looking from pos, or -1 if we can't
+    // tell without going through them a char at a time
+    protected int findClose(int pos, int depth) {
+        return -1;
+    }
+    
+    // the chars in [pos, pos + length) packed into a long a byte
+    // at a time, the first char in the highest byte, or -1 if any
+    // of them don't fit in a byte, length is at most 8
+    protected long word(int pos, int length) {
+        long word = 0;
+        for (int i = pos; i < pos + length; i++) {
+            int c = charAt(i);
+            if (c > 0xFF) return -1;
+            word = (word << 8) | c;
+        }
+        return word;
+    }
+    
+    // the text covering [start, end) of the window, which can be
+    // decoded later on, by default we have to decode it right now
+    // because the window will have moved on by then
+    protected Supplier<String> defer(int start, int end) {
+        String value = decode(start, end);
+        return () -> value;
+    }
+    
+    // move the index past any whitespace, a subclass which
+    // knows where the next token starts can jump right to it
+    protected void skipWhitespace() {
+        do {
+            while (index < limit && isWhitespace(charAt(index))) index++;
+        } while (index >= limit && more());
+    }
+    
+    // move the index past the closing quote of the string which
+    // starts at the index, or return false if there isn't one
+    protected boolean skipString() {
+        // grab the quote
+        index++;
+        
+        do {
+            while (index < limit) {
+                int c = charAt(index++);
+                if (c == '"') return true;
+                if (c == '\\') {
+                    // whatever it is it can't end the string
+                    escaped = true;
+                    if (!more()) return false;
+                    index++;
+                }
+            }
+        } while (more());
+        return false;
+    }
+    
+    // public
+    
+    public Stream<Scans.Scan> stream() {
+        return Stream.iterate(
+            getNextScan(),
+            (t) -> !t.isTerminal(),
+            (t) -> getNextScan()
+        );
+    }
+    
+    public Iterator<Scans.Scan> iterator() {
+        return new Iterator<>() {
+            public boolean hasNext() { return hasMore(); }
+            public Scans.Scan next() { return getNextScan(); }
+        };
+    }
+    
+    public boolean isDone() {
+        return !hasMore();
+    }
+    public boolean hasMore() {
+        if (peeked) return type != Scans.ScanType.END;
+        return more();
+    }
+    
+    public Scans.Scan peekNextScan() {
+        peekScan();
+        return toScan();
+    }
+    
+    public Scans.Scan getNextScan() {
+        scan();
+        return toScan();
+    }
+    
+    public void discardNextScan() {
+        scan();
+    }
+    
+    // public, allocation free
+    
+    // scan the next item into the lookahead slot, peeking
+    // again will not rescan it, and neither will scan()
+    public Scans.ScanType peekScan() {
+        if (!peeked) {
+            // we keep nothing from an incomplete scan
+            peeked = advance() != Scans.ScanType.NEED_MORE_INPUT;
+        }
+        return type;
+    }
+    
+    public Scans.ScanType scan() {
+        if (peeked) {
+            peeked = false;
+            return type;
+        }
+        return advance();
+    }
+    
+    // remember where we are, reset() will go back here
+    public void mark() {
+        mark = peeked ? start : index;
+    }
+    
+    public void reset() {
+        if (mark < 0) throw new IllegalStateException("reset() called without mark()");
+        index  = mark;
+        mark   = -1;
+        peeked = false;
+    }
+    
+    // skip the next value without looking at anything in it but the
+    // brackets and the strings (which could have brackets in them),
+    // so none of it is checked, and return the type of its scan, the
+    // scan of a container is left as its closing bracket
+    public Scans.ScanType skipValue() {
+        if (skipDepth == 0) {
+            Scans.ScanType scan = scan();
+            if (scan != Scans.ScanType.OPERATOR) return scan;
+            if (getScanChar() != '{' && getScanChar() != '[') {
+                return failed("Expected a value, found (" + (char) getScanChar() + ")");
+            }
+            skipDepth = 1;
+        }
+        return skip(false);
+    }
+    
+    // skip the rest of the container we are in, up to (but not
+    // including) its closing bracket, which is then peeked
+    public Scans.ScanType skipRest() {
+        if (skipDepth == 0) skipDepth = 1;
+        return skip(true);
+    }
+    
+    // skip to the next line which starts with a { or [, which is
+    // the next record in NDJSON (or the next top level value in
+    // anything printed like it) and peek it, nothing on the way is
+    // looked at but the line breaks, so this is how we get past
+    // whatever the last scan was choking on
+    public Scans.ScanType resync() {
+        if (!resyncing) {
+            // from the start of the bad scan, which could be the
+            // start of the next record already
+            index     = start;
+            peeked    = false;
+            skipDepth = 0;
+            lineStart = index > 0 ? charAt(index - 1) == '\n' : shifted == 0;
+            resyncing = true;
+        }
+        starved = false;
+        start = index;
+        do {
+            while (index < limit) {
+                int c = charAt(index);
+                if (lineStart && (c == '{' || c == '[')) {
+                    resyncing = false;
+                    return peekScan();
+                }
+                lineStart = c == '\n';
+                start = ++index;
+            }
+        } while (more());
+        
+        if (starved) return starve();
+        resyncing = false;
+        return found(Scans.ScanType.END);
+    }
+    
+    // carry on scanning from pos (from the start of the input), and
+    // forget the current scan, pos must still be in the window
+    public void seek(long pos) {
+        long at = pos - shifted;
+        if (at < 0 || at > limit) throw new IllegalArgumentException("Can't seek to " + pos + ", it is not in the window");
+        index     = (int) at;
+        start     = index;
+        end       = index;
+        peeked    = false;
+        skipDepth = 0;
+        resyncing = false;
+        mark      = -1;
+    }
+    
+    // where the current scan starts and ends, from the start of the
+    // input, which is in chars for a Scanner and bytes for the others
+    public long getScanStart() {
+        return shifted + start;
+    }
+    
+    public long getScanEnd() {
+        return shifted + end;
+    }
+    
+    public Scans.ScanType getScanType() {
+        return type;
+    }
+    
+    // the first char of the current scan, which is enough to
+    // tell operators and keywords apart, or -1 if it is empty
+    public int getScanChar() {
+        return start < end ? charAt(start) : -1;
+    }
+    
+    public String getScanValue() {
+        return type == Scans.ScanType.ERROR ? error : decode(start, end);
+    }
+    
+    // the value without any quotes or escapes
+    public String getScanContent() {
+        if (type != Scans.ScanType.STRING) return getScanValue();
+        String content = decode(start + 1, end - 1);
+        return escaped ? unescape(content) : content;
+    }
+    
+    // the same, but from the cache if it's in there (or put in it if
+    // not), which is what we do for keys
+    public String getScanContent(KeyCache cache) {
+        if (type != Scans.ScanType.STRING || escaped) return cache.intern(getScanContent());
+        return cache.intern(this, start + 1, end - 1);
+    }
+    
+    public Supplier<String> getDeferredScanContent() {
+        if (type != Scans.ScanType.STRING) return defer(start, end);
+        Supplier<String> content = defer(start + 1, end - 1);
+        return escaped ? () -> unescape(content.get()) : content;
+    }
+    
+    // the escapes are all ASCII, so this works just as
+    // well on a string which has already been decoded
+    static String unescape(String content) {
+        int next = content.indexOf('\\');
+        if (next < 0) return content;
+        
+        StringBuilder sb = new StringBuilder(content.length());
+        int from = 0;
+        while (next >= 0) {
+            sb.append(content, from, next);
+            char c = content.charAt(next + 1);
+            from = next + 2;
+            switch (c) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    sb.append((char) Integer.parseInt(content, from, from + 4, 16));
+                    from += 4;
+                }
+                // the quote, backslash and slash are themselves
+                default  -> sb.append(c);
+            }
+            next = content.indexOf('\\', from);
+        }
+        return sb.append(content, from, content.length()).toString();
+    }
+    
+    public int getScanInt() {
+        return Math.toIntExact(getScanLong());
+    }
+        
+    // true if the current scan is an integer which fits in a long
+    public boolean isScanLong() {
+        return type == Scans.ScanType.INTEGER && !overflow;
+    }
+    
+    public long getScanLong() {
+        // let parseLong complain about it
+        if (!isScanLong()) return Long.parseLong(getScanValue());
+        return negative ? digits : -digits;
+    }
+    
+    public double getScanDouble() {
+        if (!overflow) {
+            long mantissa = -digits;
+            int e = exponent;
+            // move any exponent we can into the mantissa
+            while (e > 22 && mantissa >= 0 && mantissa < MAX_EXACT / 10) {
+                mantissa *= 10;
+                e--;
+            }
+            // both the mantissa and the power of ten are exact, so a
+            // single multiply or divide is correctly rounded (Clinger)
+            if (mantissa >= 0 && mantissa <= MAX_EXACT && e >= -22 && e <= 22) {
+                double value = mantissa;
+                value = e < 0 ? value / POWERS_OF_TEN[-e] : value * POWERS_OF_TEN[e];
+                return negative ? -value : value;
+            }
+        }
+        // the slow path, but it is always correct
+        return Double.parseDouble(getScanValue());
+    }
+    
+    public BigDecimal getScanBigDecimal() {
+        if (!overflow) return BigDecimal.valueOf(negative ? digits : -digits, -exponent);
+        return new BigDecimal(getScanValue());
+    }
+    
+    // private
+    
+    private Scans.ScanType advance() {
+        starved = false;
+        // consume any whitespace
+        start = index;
+        skipWhitespace();
+        start = index;
+        // end it if we are done
+        if (index >= limit) return isEndOfInput() ? found(Scans.ScanType.END) : starve();
+        
+        Scans.ScanType scanned = switch (classOf(charAt(index))) {
+            case OPERATOR     -> operator();
+            case KEYWORD      -> keyword();
+            case QUOTE        -> stringConstant();
+            case DIGIT, MINUS -> numericConstant();
+            default           -> failed("Expected number or string, found ("+(char) charAt(index)+")");
+        };
+        // it ran into the end of what we have so far, so it
+        // might not be complete, we scan it again once we have more
+        return starved ? starve() : scanned;
+    }
+    
+    private Scans.ScanType skip(boolean rest) {
+        // anything we peeked is part of what we are skipping
+        if (peeked) {
+            index  = start;
+            peeked = false;
+        }
+        int close = findClose(index, skipDepth);
+        if (close >= 0) {
+            skipDepth = 0;
+            if (rest) {
+                index = close;
+                return peekScan();
+            }
+            start = close;
+            index = close + 1;
+            return found(Scans.ScanType.OPERATOR);
+        }
+        starved = false;
+        // start is always the next thing to skip, anything
+        // before it can go the next time we refill
+        start = index;
+        do {
+            while (index < limit) {
+                switch (charAt(index)) {
+                    case '{', '[' -> {
+                        skipDepth++;
+                        index++;
+                    }
+                    case '}', ']' -> {
+                        if (rest && skipDepth == 1) {
+                            skipDepth = 0;
+                            return peekScan();
+                        }
+                        index++;
+                        if (--skipDepth == 0) return found(Scans.ScanType.OPERATOR);
+                    }
+                    case '"' -> {
+                        if (!skipString()) {
+                            if (starved) return starve();
+                            skipDepth = 0;
+                            return failed("Unterminated string constant (" + decode(start, index) + ")");
+                        }
+                    }
+                    default -> index++;
+                }
+                start = index;
+            }
+        } while (more());
+        
+        if (starved) return starve();
+        skipDepth = 0;
+        return failed("Unexpected end of input in a skipped value");
+    }
+    
+    private Scans.ScanType found(Scans.ScanType scanned) {
+        type = scanned;
+        end = index;
+        return scanned;
+    }
+    
+    private Scans.ScanType starve() {
+        index = start;
+        return found(Scans.ScanType.NEED_MORE_INPUT);
+    }
+    
+    private Scans.ScanType failed(String msg) {
+        error = msg;
+        return found(Scans.ScanType.ERROR);
+    }
+    
+    private Scans.Scan toScan() {
+        return switch (type) {
+            case END      -> new Scans.End();
+            case NEED_MORE_INPUT -> new Scans.NeedMoreInput();
+            case ERROR    -> new Scans.Error(error);
+            case OPERATOR -> new Scans.Operator(decode(start, end));
+            case KEYWORD  -> new Scans.Keyword(decode(start, end));
+            default       -> constant(start, end, type);
+        };
+    }
+    
+    private Scans.ScanType operator() {
+        index++;
+        return found(Scans.ScanType.OPERATOR);
+    }
+    
+    private Scans.ScanType stringConstant() {
+        escaped = false;
+        if (!skipString()) return starved ? starve() : failed("Unterminated string constant (" + decode(start, index) + ")");
+        
+        if (escaped && !validEscapes(start + 1, index - 1)) {
+            return failed("Invalid escape sequence in string constant (" + decode(start, index) + ")");
+        }
+        return found(Scans.ScanType.STRING);
+    }
+        
+    private boolean validEscapes(int from, int to) {
+        for (int pos = from; pos < to; pos++) {
+            if (charAt(pos) != '\\') continue;
+            switch (charAt(++pos)) {
+                case '"', '\\', '/', 'b', 'f', 'n', 'r', 't' -> {}
+                case 'u' -> {
+                    if (pos + 4 >= to) return false;
+                    for (int i = 0; i < 4; i++) {
+                        if (Character.digit(charAt(++pos), 16) < 0) return false;
+                    }
+                }
+                default -> { return false; }
+            }
+        }
+        return true;
+    }
+    
+    private Scans.ScanType numericConstant() {
+        negative = charAt(index) == '-';
+        if (negative) index++;
+        
+        digits   = 0;
+        exponent = 0;
+        overflow = false;
+        
+        Scans.ScanType scanned = Scans.ScanType.INTEGER;
+        
+        // the window can move while we read the digits, but it
+        // always moves start along with it, so we count from there
+        int first = index - start;
+        if (digits(false) == 0) return failed("Expected digits in numeric constant (" + decode(start, index) + ")");
+        if (charAt(start + first) == '0' && index - start - first > 1) {
+            return failed("Leading zeros are not allowed in numeric constant (" + decode(start, index) + ")");
+        }
+        
+        if (more() && charAt(index) == '.') {
+            index++;
+            if (digits(true) == 0) return failed("Expected digits after the decimal point (" + decode(start, index) + ")");
+            scanned = Scans.ScanType.FLOAT;
+        }
+        
+        if (more() && (charAt(index) | 0x20) == 'e') {
+            index++;
+            boolean negate = false;
+            if (more() && (charAt(index) == '+' || charAt(index) == '-')) {
+                negate = charAt(index++) == '-';
+            }
+            int e = 0, count = 0;
+            while (more() && isDigit(charAt(index))) {
+                if (e < MAX_EXPONENT) e = e * 10 + (charAt(index) - '0');
+                index++;
+                count++;
+            }
+            if (count == 0) return failed("Expected digits in exponent (" + decode(start, index) + ")");
+            if (e >= MAX_EXPONENT) overflow = true;
+            exponent += negate ? -e : e;
+            scanned = Scans.ScanType.FLOAT;
+        }
+        return found(scanned);
+    }
+    
+    // accumulate a run of digits, each fraction digit moves the
+    // exponent down by one, and return how many there were
+    private int digits(boolean fraction) {
+        int count = 0;
+        int c;
+        do {
+            while (index < limit && isDigit(c = charAt(index))) {
+                index++;
+                count++;
+                int d = c - '0';
+                if (digits > LONG_GUARD) {
+                    // nowhere near overflowing, which is nearly always
+                    digits = digits * 10 - d;
+                    if (fraction) exponent--;
+                } else if (!overflow && digits == LONG_GUARD && d <= (negative ? 8 : 7)) {
+                    // right up against Long.MIN_VALUE (or MAX_VALUE)
+                    digits = digits * 10 - d;
+                    if (fraction) exponent--;
+                } else {
+                    // the slow path will have to deal with it
+                    overflow = true;
+                }
+            }
+        } while (index >= limit && more());
+        return count;
+    }
+    
+    private static int classOf(int c) {
+        return c < CLASSES.length ? CLASSES[c] : OTHER;
+    }
+    
+    private static boolean isDigit(int c) {
+        return classOf(c) == DIGIT;
+    }
+    
+    // only what JSON counts as whitespace
+    static boolean isWhitespace(int c) {
+        return classOf(c) == WHITESPACE;
+    }
+    
+    private Scans.ScanType keyword() {
+        char[] expected = switch (charAt(index)) {
+            case 't' -> TRUE;
+            case 'f' -> FALSE;
+            default  -> NULL;
+        };
+        // when it is all in the window it is just the one compare
+        if (index + expected.length <= limit) {
+            long word = expected == TRUE ? TRUE_WORD : expected == FALSE ? FALSE_WORD : NULL_WORD;
+            if (word(index, expected.length) == word) {
+                index += expected.length;
+                return found(Scans.ScanType.KEYWORD);
+            }
+        }
+        return keyword(expected);
+    }
+    
+    private static long pack(char[] chars) {
+        long word = 0;
+        for (char c : chars) word = (word << 8) | c;
+        return word;
+    }
+    
+    private Scans.ScanType keyword(char[] expected) {
+        for (char c : expected) {
+            if (more() && charAt(index) == c) {
+                index++;
+            } else {
+                return failed(
+                    "Expected keyword(" + Arrays.toString(expected)
+                        + ") but got(" + decode(start, index) + "«" + (more() ? (char) charAt(index) : "") + "»)"
+                );
+            }
+        }
+        
+        return found(Scans.ScanType.KEYWORD);
+    }
+    
+    // buffer management
+    
+    private boolean more() {
+        if (index < limit || fill()) return true;
+        if (!isEndOfInput()) starved = true;
+        return false;
+    }
+    
+    private boolean fill() {
+        int shift = refill(mark >= 0 ? Math.min(mark, start) : start);
+        if (shift < 0) return false;
+        shifted += shift;
+        index -= shift;
+        start -= shift;
+        end   -= shift;
+        if (mark >= 0) mark -= shift;
+        return index < limit;
+    }
+}
@@ -0,0 +1,229 @@
+package org.example.jsonstream.tokenizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+// Scans UTF-8 bytes, either a buffer we already have, or a file
+// which is mapped one window at a time. Closing it closes the file,
+// but only if it was the one to open it (see open()), a channel
+// given to it belongs to whoever gave it.
+public class ByteScanner extends AbstractScanner implements AutoCloseable {
+    
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    
+    // UTF-8 encoded source, everything outside of strings
+    // is ASCII so we can scan it without decoding anything
+    private ByteBuffer source;
+    
+    // when mapping a file we map it one window at a time,
+    // otherwise this is null and the source is everything
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long size;
+    private long position;
+    private int windowSize;
+    
+    // when we have a structural index we can jump from one token
+    // to the next without looking at anything in between them
+    private final StructuralIndex structure;
+    private int cursor;
+    
+    public ByteScanner(ByteBuffer source) {
+        this(source, null);
+    }
+    
+    public ByteScanner(ByteBuffer source, StructuralIndex structure) {
+        this.source = source.slice();
+        this.limit = this.source.limit();
+        this.index = 0;
+        this.channel = null;
+        this.ownsChannel = false;
+        this.size = this.limit;
+        this.structure = structure;
+    }
+    
+    public static ByteScanner indexed(ByteBuffer source) {
+        return new ByteScanner(source, StructuralIndex.build(source));
+    }
+    
+    public ByteScanner(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+    
+    public ByteScanner(FileChannel channel, int windowSize) throws IOException {
+        this(channel, windowSize, false);
+    }
+    
+    private ByteScanner(FileChannel channel, int windowSize, boolean ownsChannel) throws IOException {
+        if (windowSize < 1) throw new IllegalArgumentException("windowSize must be positive, not " + windowSize);
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.size = channel.size();
+        this.position = 0;
+        this.windowSize = windowSize;
+        this.source = map(0, (int) Math.min(windowSize, size));
+        this.limit = this.source.limit();
+        this.index = 0;
+        this.structure = null;
+    }
+    
+    // the channel is ours, so close() closes it
+    public static ByteScanner open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ByteScanner(channel, DEFAULT_WINDOW_SIZE, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // the windows we already mapped are still good after this
+    public void close() throws IOException {
+        if (ownsChannel) channel.close();
+    }
+    
+    // the source
+    
+    protected int charAt(int pos) {
+        return source.get(pos) & 0xFF;
+    }
+    
+    protected String decode(int start, int end) {
+        return decode(source, start, end);
+    }
+    
+    protected Scans.Scan constant(int start, int end, Scans.ScanType type) {
+        // the slice is only a view, we decode it if someone asks
+        return new Scans.EncodedConstant(source.slice(start, end - start), type);
+    }
+    
+    // the windows we map never change underneath us, so
+    // we can hold on to a view and decode it much later
+    protected Supplier<String> defer(int start, int end) {
+        ByteBuffer window = source;
+        return () -> decode(window, start, end);
+    }
+    
+    // a big endian int is already in the right order
+    protected long word(int pos, int length) {
+        if (length < 4) return super.word(pos, length);
+        long word = source.getInt(pos) & 0xFFFFFFFFL;
+        for (int i = pos + 4; i < pos + length; i++) word = (word << 8) | (source.get(i) & 0xFF);
+        return word;
+    }
+    
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    protected void skipWhitespace() {
+        if (structure == null || index >= limit || !isWhitespace(charAt(index))) {
+            super.skipWhitespace();
+            return;
+        }
+        cursor = structure.find(index, cursor);
+        index  = cursor < structure.size() ? structure.get(cursor) : limit;
+    }
+    
+    protected boolean skipString() {
+        if (structure != null) {
+            // the closing quote is the last thing before whatever
+            // comes next, and the index knows where that is
+            cursor = structure.find(index + 1, cursor);
+            int close = (cursor < structure.size() ? structure.get(cursor) : limit) - 1;
+            while (close > index && isWhitespace(charAt(close))) close--;
+            if (close > index && charAt(close) == '"') {
+                escaped = structure.hasEscape(index + 1, close);
+                index = close + 1;
+                return true;
+            }
+        }
+        return super.skipString();
+    }
+    
+    // only the brackets matter, and the index has every one of them
+    // that isn't in a string, so we can count our way out on those
+    protected int findClose(int pos, int depth) {
+        if (structure == null) return -1;
+        for (int i = structure.find(pos, cursor); i < structure.size(); i++) {
+            int at = structure.get(i);
+            switch (charAt(at)) {
+                case '{', '[' -> depth++;
+                case '}', ']' -> {
+                    if (--depth == 0) {
+                        cursor = i;
+                        return at;
+                    }
+                }
+                default -> {}
+            }
+        }
+        // it never closes, which the slow way will complain about
+        return -1;
+    }
+    
+    // buffer management
+    
+    // map the next window starting from keep, older windows
+    // stay valid for as long as a slice of them is around
+    protected int refill(int keep) {
+        if (channel == null) return -1;
+        
+        long from = position + keep;
+        long remaining = size - from;
+        int pending = limit - keep;
+        if (remaining <= pending) return -1;
+        
+        // a single token larger than the whole window, so
+        // we have no choice but to grow to make it fit
+        if (pending >= windowSize) windowSize = grow(windowSize, pending);
+        
+        try {
+            source = map(from, (int) Math.min(windowSize, remaining));
+            position = from;
+            limit = source.limit();
+            return keep;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // doubled until there is room for more than what is pending, but
+    // one mapping can't be any bigger than an int, so that is as far
+    // as it goes, and a single token that size can't be scanned at all
+    static int grow(int windowSize, int pending) {
+        if (pending >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("A single token of " + pending + " bytes or more is too large to map");
+        }
+        while (pending >= windowSize) {
+            windowSize = windowSize > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : windowSize * 2;
+        }
+        return windowSize;
+    }
+    
+    private ByteBuffer map(long from, int length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+    }
+    
+    @Override
+    public String toString() {
+        byte[] window = new byte[limit];
+        source.get(0, window);
+        String orig = new String(window, 0, Math.min(index, limit), StandardCharsets.UTF_8);
+        String rest = new String(window, Math.min(index, limit), limit - Math.min(index, limit), StandardCharsets.UTF_8);
+        return "ByteScanner `"+
+                   (rest.isEmpty()
+                        ? orig + "«»"
+                        : (orig + "«" + rest.charAt(0) + "»" + rest.substring(1)))
+                   + "` (length: "+limit + ", index: "+index+")";
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.jsonstream.tokenizer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// A scanner which is pushed UTF-8 input a chunk at a time, rather
+// than pulling it from a source, so it never blocks. When a scan
+// runs into the end of what has been fed so far it comes back as
+// NEED_MORE_INPUT, and it is scanned again after the next feed().
+public class FeedableScanner extends AbstractScanner {
+    
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    // everything fed to us which has not been scanned yet, plus
+    // whatever is left of the scan in progress, older input is
+    // dropped as soon as we run out so this stays small
+    private byte[] source;
+    
+    private boolean ended;
+    
+    public FeedableScanner() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+    
+    public FeedableScanner(int bufferSize) {
+        if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be positive, not " + bufferSize);
+        this.source = new byte[bufferSize];
+        this.limit = 0;
+        this.index = 0;
+    }
+    
+    // copies the rest of the chunk, so the caller can reuse it
+    public void feed(ByteBuffer chunk) {
+        if (ended) throw new IllegalStateException("feed() called after endOfInput()");
+        
+        int length = chunk.remaining();
+        if (limit + length > source.length) {
+            source = Arrays.copyOf(source, Math.max(source.length * 2, limit + length));
+        }
+        chunk.get(source, limit, length);
+        limit += length;
+    }
+    
+    // there will be no more chunks, so whatever is
+    // left at the end is as complete as it will get
+    public void endOfInput() {
+        ended = true;
+    }
+    
+    public boolean isEndOfInput() {
+        return ended;
+    }
+    
+    // the source
+    
+    protected int charAt(int pos) {
+        return source[pos] & 0xFF;
+    }
+    
+    protected String decode(int start, int end) {
+        return new String(source, start, end - start, StandardCharsets.UTF_8);
+    }
+    
+    protected Scans.Scan constant(int start, int end, Scans.ScanType type) {
+        return new Scans.Constant(decode(start, end), type);
+    }
+    
+    // buffer management
+    
+    // there is nothing more to read until we are fed again,
+    // but we can make room for it by dropping what we are done with
+    protected int refill(int keep) {
+        if (keep == 0) return -1;
+        
+        System.arraycopy(source, keep, source, 0, limit - keep);
+        limit -= keep;
+        return keep;
+    }
+    
+    @Override
+    public String toString() {
+        String orig = new String(source, 0, Math.min(index, limit), StandardCharsets.UTF_8);
+        String rest = new String(source, Math.min(index, limit), limit - Math.min(index, limit), StandardCharsets.UTF_8);
+        return "FeedableScanner `"+
+                   (rest.isEmpty()
+                        ? orig + "«»"
+                        : (orig + "«" + rest.charAt(0) + "»" + rest.substring(1)))
+                   + "` (length: "+limit + ", index: "+index+", ended: "+ended+")";
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.jsonstream.tokenizer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// The keys we have seen before, so that the same key over and over
+// again (as in a million records with the same few dozen keys) is the
+// same String each time, rather than a new one for every record.
+//
+// A key is looked up straight from the chars (or bytes) of the input,
+// which are hashed and compared where they are, so a key which is in
+// here doesn't cost a String at all. It is a fixed size table with one
+// key per slot, so it never grows, and a new key just takes the slot
+// from whatever was there before. Any number of threads (and so any
+// number of tokenizers) can share one, at worst a key is made twice.
+//
+// Only short, plain keys are kept, a key with escapes in it, or with
+// anything but ASCII, or longer than MAX_LENGTH is made the usual way,
+// and then looked up by its value instead.
+public class KeyCache {
+    
+    public static final int DEFAULT_SIZE = 4096;
+    public static final int MAX_LENGTH = 64;
+    
+    private static final KeyCache SHARED = new KeyCache();
+    
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public KeyCache() {
+        this(DEFAULT_SIZE);
+    }
+    
+    // size is rounded up to a power of two
+    public KeyCache(int size) {
+        if (size < 1) throw new IllegalArgumentException("size must be positive, not " + size);
+        int slots = Integer.highestOneBit(size);
+        if (slots < size) slots <<= 1;
+        this.table = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+    }
+    
+    // the one everything can share, see Tokenizer.withKeyCache()
+    public static KeyCache shared() {
+        return SHARED;
+    }
+    
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    
+    public int size() { return table.length(); }
+    
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) table.set(i, null);
+        hits.reset();
+        misses.reset();
+    }
+    
+    // the one instance of a key we already have as a String
+    public String intern(String key) {
+        if (key.length() > MAX_LENGTH) {
+            misses.increment();
+            return key;
+        }
+        int hash = key.hashCode();
+        int slot = spread(hash) & mask;
+        String cached = table.get(slot);
+        if (cached != null && cached.hashCode() == hash && cached.equals(key)) {
+            hits.increment();
+            return cached;
+        }
+        table.set(slot, key);
+        misses.increment();
+        return key;
+    }
+    
+    // the key in [from, to) of the scanner's window, the hash is the
+    // same as String.hashCode(), so these and the ones interned as
+    // Strings are the same keys
+    String intern(AbstractScanner scanner, int from, int to) {
+        int length = to - from;
+        if (length > MAX_LENGTH) return intern(scanner.decode(from, to));
+        
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            int c = scanner.charAt(i);
+            // the bytes of a char aren't the char, so we can't compare them
+            if (c >= 0x80) return intern(scanner.decode(from, to));
+            hash = 31 * hash + c;
+        }
+        
+        int slot = spread(hash) & mask;
+        String cached = table.get(slot);
+        if (cached != null && cached.hashCode() == hash && matches(cached, scanner, from, length)) {
+            hits.increment();
+            return cached;
+        }
+        String key = scanner.decode(from, to);
+        table.set(slot, key);
+        misses.increment();
+        return key;
+    }
+    
+    private static boolean matches(String key, AbstractScanner scanner, int from, int length) {
+        if (key.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != scanner.charAt(from + i)) return false;
+        }
+        return true;
+    }
+    
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
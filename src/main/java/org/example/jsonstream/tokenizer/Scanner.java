@@ -1,162 +1,136 @@
 package org.example.jsonstream.tokenizer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.stream.Stream;
 
-public class Scanner {
+public class Scanner extends AbstractScanner {
     
-    private final char[] source;
-    private int index;
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    
+    // when reading from a String this is the entire source
+    // and when reading from a Reader it slides along the input
+    private char[] source;
+    
+    // null when we were handed the entire source up front
+    private Reader reader;
+    private boolean exhausted;
     
     public Scanner(String source) {
         this.source = source.toCharArray();
+        this.limit = this.source.length;
         this.index = 0;
+        this.reader = null;
+        this.exhausted = true;
     }
     
-    // public
-    
-    public Stream<Scans.Scan> stream() {
-        return Stream.iterate(
-            getNextScan(),
-            (t) -> !t.isTerminal(),
-            (t) -> getNextScan()
-        );
+    public Scanner(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
     }
     
-    public Iterator<Scans.Scan> iterator() {
-        return new Iterator<>() {
-            public boolean hasNext() { return hasMore(); }
-            public Scans.Scan next() { return getNextScan(); }
-        };
+    public Scanner(Reader reader, int bufferSize) {
+        if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be positive, not " + bufferSize);
+        this.source = new char[bufferSize];
+        this.limit = 0;
+        this.index = 0;
+        this.reader = reader;
+        this.exhausted = false;
     }
     
-    public boolean isDone() {
-        return index >= source.length;
-    }
-    public boolean hasMore() {
-        return index < source.length;
+    public Scanner(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
     }
     
-    public Scans.Scan peekNextScan() {
-        int temp = index;
-        Scans.Scan token = getNextScan();
-        index = temp;
-        return token;
+    public Scanner(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8));
     }
     
-    public Scans.Scan getNextScan() {
-        // consume any whitespace
-        while (hasMore() && Character.isWhitespace(source[index])) index++;
-        // end it if we are done
-        if (isDone()) return new Scans.End();
-        
-        return switch (source[index]) {
-            case '{', '}', '[', ']', ',', ':' -> getOperator();
-            case 't' -> getKeyword('t', 'r', 'u', 'e');
-            case 'f' -> getKeyword('f', 'a', 'l', 's', 'e');
-            case 'n' -> getKeyword('n', 'u', 'l', 'l');
-            default  -> getConstant();
-        };
+    // start over on something else, copied into the buffer we already
+    // have if it fits, so one scanner can be used for any number of them
+    public Scanner restart(String source) {
+        restart();
+        int length = source.length();
+        if (length > this.source.length) this.source = new char[length];
+        source.getChars(0, length, this.source, 0);
+        this.limit = length;
+        this.reader = null;
+        this.exhausted = true;
+        return this;
     }
     
-    public void discardNextScan() {
-        getNextScan();
+    public Scanner restart(Reader reader) {
+        restart();
+        // the string we had could have been empty
+        if (this.source.length == 0) this.source = new char[DEFAULT_BUFFER_SIZE];
+        this.reader = reader;
+        this.exhausted = false;
+        return this;
     }
     
-    // private
+    // the source
     
-    private Scans.Scan getOperator() {
-        return new Scans.Operator(source[index++] + "");
+    protected int charAt(int pos) {
+        return source[pos];
     }
     
-    private Scans.Scan getConstant() {
-        return switch (source[index]) {
-            case '"' -> getStringConstant();
-            case '-' -> getNumericConstant();
-            default  ->
-                (Character.isDigit(source[index])
-                     ? getNumericConstant()
-                     : new Scans.Error("Expected number or string, found ("+source[index]+")"));
-        };
+    protected String decode(int start, int end) {
+        return String.valueOf(source, start, end - start);
     }
     
-    private Scans.Scan getStringConstant() {
-        StringBuilder acc = new StringBuilder();
-        // grab the quote
-        acc.append(source[index++]);
-        
-        while (hasMore()) {
-            acc.append(source[index++]);
-            
-            if (source[index] == '"') {
-                acc.append(source[index++]);
-                break;
-            }
-        }
-        
-        // TODO - check for unterminated string
-        //  constant and escape sequences
-        
-        return new Scans.Constant(acc.toString(), Scans.ScanType.STRING);
+    protected Scans.Scan constant(int start, int end, Scans.ScanType type) {
+        return new Scans.Constant(decode(start, end), type);
     }
     
-    private Scans.Scan getNumericConstant() {
-        StringBuilder acc = new StringBuilder();
+    // buffer management
+    
+    // move what we still need to the front of the buffer
+    // and read more into the space that frees up
+    protected int refill(int keep) {
+        if (exhausted) return -1;
         
-        if (source[index] == '-') {
-            acc.append(source[index++]);
+        if (keep > 0) {
+            System.arraycopy(source, keep, source, 0, limit - keep);
+            limit -= keep;
         }
-        
-        Scans.ScanType type = Scans.ScanType.INTEGER;
-        
-        OUTER: while (hasMore()) {
-            switch (source[index]) {
-                case '.' -> {
-                    acc.append(source[index++]);
-                    type = Scans.ScanType.FLOAT;
-                }
-                case 'e' -> {
-                    return new Scans.Error("Scientific notation not supported (yet)");
-                }
-                default -> {
-                    if (Character.isDigit(source[index])) {
-                        acc.append(source[index++]);
-                    } else {
-                        break OUTER;
-                    }
-                }
-            }
+        // a single token larger than the whole window, so
+        // we have no choice but to grow to make it fit
+        if (limit == source.length) {
+            source = Arrays.copyOf(source, source.length * 2);
         }
-        return new Scans.Constant(acc.toString(), type);
-    }
-    
-    private Scans.Scan getKeyword(char ... expected) {
-        StringBuilder acc = new StringBuilder();
         
-        for (char c : expected) {
-            if (source[index] == c) {
-                acc.append(source[index++]);
+        try {
+            int read;
+            do {
+                read = reader.read(source, limit, source.length - limit);
+            } while (read == 0);
+            
+            if (read < 0) {
+                exhausted = true;
+                reader.close();
             } else {
-                return new Scans.Error(
-                    "Expected keyword(" + Arrays.toString(expected)
-                        + ") but got(" + acc + "«" + source[index] + "»)"
-                );
+                limit += read;
             }
+            return keep;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        
-        return new Scans.Keyword(acc.toString());
     }
     
     @Override
     public String toString() {
-        String orig = String.valueOf(source);
+        String orig = String.valueOf(source, 0, limit);
         return "Scanner `"+
-                   (index < source.length
+                   (index < limit
                         ? (orig.substring(0, index)
                                + "«" + orig.charAt(index) + "»"
                                + orig.substring(index + 1))
                         : orig + "«»")
-                   + "` (length: "+source.length + ", index: "+index+")";
+                   + "` (length: "+limit + ", index: "+index+")";
     }
 }
@@ -1,8 +1,11 @@
 package org.example.jsonstream.tokenizer;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class Scans {
     public enum ScanType {
-        OPERATOR, KEYWORD, STRING, INTEGER, FLOAT, ERROR, END
+        OPERATOR, KEYWORD, STRING, INTEGER, FLOAT, ERROR, END, NEED_MORE_INPUT
     }
     
     public interface Scan {
@@ -10,10 +13,14 @@ public class Scans {
         String getValue();
         boolean isTerminal();
         
+        // the value without any quotes
+        default String getContent() { return getValue(); }
+        
         default boolean isOperator() { return getType() == ScanType.OPERATOR; }
         default boolean isKeyword()  { return getType() == ScanType.KEYWORD;  }
         default boolean isError()    { return getType() == ScanType.ERROR;    }
         default boolean isEnd()      { return getType() == ScanType.END;      }
+        default boolean isNeedMoreInput() { return getType() == ScanType.NEED_MORE_INPUT; }
         default boolean isString()   { return getType() == ScanType.STRING;   }
         default boolean isInteger()  { return getType() == ScanType.INTEGER;  }
         default boolean isFloat()    { return getType() == ScanType.FLOAT;    }
@@ -67,10 +74,45 @@ public class Scans {
         public ScanType getType() { return type; }
         public String getValue() { return constant; }
         public boolean isTerminal() { return false; }
+        
+        public String getContent() {
+            return type == ScanType.STRING
+                ? AbstractScanner.unescape(constant.substring(1, constant.length() - 1))
+                : constant;
+        }
         @Override
         public String toString() { return "Constant «" + getValue() + "»"; }
     }
     
+    // a Constant still encoded as UTF-8 in the source,
+    // it only gets decoded when the value is asked for
+    public static class EncodedConstant implements Scan {
+        ByteBuffer constant;
+        ScanType type;
+        public EncodedConstant(ByteBuffer constant, ScanType type) {
+            this.constant = constant;
+            this.type = type;
+        }
+        
+        public ScanType getType() { return type; }
+        public String getValue() { return decode(0, constant.limit()); }
+        public boolean isTerminal() { return false; }
+        
+        public String getContent() {
+            return type == ScanType.STRING
+                ? AbstractScanner.unescape(decode(1, constant.limit() - 1))
+                : getValue();
+        }
+        
+        private String decode(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            constant.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        @Override
+        public String toString() { return "EncodedConstant «" + getValue() + "»"; }
+    }
+    
     public static class Error implements Scan {
        String error;
        public Error(String error) { this.error = error; }
@@ -90,4 +132,14 @@ public class Scans {
         @Override
         public String toString() { return "End «»"; }
     }
+    
+    // the input stopped part way through, there is more to come
+    public static class NeedMoreInput implements Scan {
+        public NeedMoreInput() {}
+        public ScanType getType() { return ScanType.NEED_MORE_INPUT; }
+        public String getValue() { return ""; }
+        public boolean isTerminal() { return true; }
+        @Override
+        public String toString() { return "NeedMoreInput «»"; }
+    }
 }
@@ -0,0 +1,240 @@
+package org.example.jsonstream.tokenizer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// The positions of everything the Tokenizer cares about in a UTF-8
+// source, which is the operators {}[],: the opening quote of each
+// string and the first char of each number or keyword, but never
+// anything which is inside of a string.
+//
+// It is built a 64 byte block at a time, each block is classified
+// into bitmasks (8 bytes at a time in a long, or with the Vector API
+// when that is asked for, see pickClassifier()) and the
+// masks are then combined to find which quotes are escaped, which
+// bytes are inside of strings, and finally the positions themselves.
+public class StructuralIndex {
+    
+    static final int BLOCK_SIZE = 64;
+    
+    static final String VECTOR_PROPERTY = "jsonstream.vector";
+    
+    // classifies a block of 64 bytes into bitmasks, bit N of each
+    // mask is set if byte N of the block is in that class
+    interface Classifier {
+        int QUOTE      = 0;
+        int BACKSLASH  = 1;
+        int OPERATOR   = 2;
+        int WHITESPACE = 3;
+        
+        void classify(byte[] block, long[] masks);
+    }
+    
+    private static final Classifier CLASSIFIER = pickClassifier();
+    
+    private final int[] positions;
+    private final int size;
+    
+    // the position of every backslash which escapes something
+    private final int[] escapes;
+    private final int escapeCount;
+    
+    private StructuralIndex(int[] positions, int size, int[] escapes, int escapeCount) {
+        this.positions = positions;
+        this.size = size;
+        this.escapes = escapes;
+        this.escapeCount = escapeCount;
+    }
+    
+    public static StructuralIndex build(ByteBuffer source) {
+        return build(source, CLASSIFIER);
+    }
+    
+    public static boolean isVectorized() {
+        return !(CLASSIFIER instanceof ScalarClassifier);
+    }
+    
+    public int size() { return size; }
+    
+    public int get(int i) { return positions[i]; }
+    
+    // the index of the first position which is at or after pos, or
+    // size() if there is none, start is a hint of where to look from
+    public int find(int pos, int start) {
+        // usually we are moving forward a little at a time
+        int i = Math.max(0, Math.min(start, size));
+        if (i > 0 && positions[i - 1] >= pos) {
+            i = Arrays.binarySearch(positions, 0, size, pos);
+            return i < 0 ? -(i + 1) : i;
+        }
+        while (i < size && positions[i] < pos) i++;
+        return i;
+    }
+    
+    // true if there are any escapes in [from, to)
+    public boolean hasEscape(int from, int to) {
+        if (escapeCount == 0) return false;
+        int i = Arrays.binarySearch(escapes, 0, escapeCount, from);
+        if (i < 0) i = -(i + 1);
+        return i < escapeCount && escapes[i] < to;
+    }
+    
+    // stage 1
+    
+    static StructuralIndex build(ByteBuffer source, Classifier classifier) {
+        int length = source.remaining();
+        int offset = source.position();
+        
+        byte[] block = new byte[BLOCK_SIZE];
+        long[] masks = new long[4];
+        
+        int[] positions = new int[Math.max(16, length / 4)];
+        int size = 0;
+        int[] escapes = new int[16];
+        int escapeCount = 0;
+        
+        // carried from one block to the next
+        boolean prevEscaped = false;
+        long prevInString = 0;
+        long prevScalar = 0;
+        
+        for (int base = 0; base < length; base += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, length - base);
+            source.get(offset + base, block, 0, n);
+            // pad the last block with whitespace
+            if (n < BLOCK_SIZE) Arrays.fill(block, n, BLOCK_SIZE, (byte) ' ');
+            
+            classifier.classify(block, masks);
+            
+            long quote      = masks[Classifier.QUOTE];
+            long backslash  = masks[Classifier.BACKSLASH];
+            long operator   = masks[Classifier.OPERATOR];
+            long whitespace = masks[Classifier.WHITESPACE];
+            
+            // any char following an unescaped backslash is escaped,
+            // backslashes are rare so we just walk through them
+            long escaped = 0;
+            if (prevEscaped) {
+                escaped |= 1L;
+                backslash &= ~1L;
+            }
+            prevEscaped = false;
+            while (backslash != 0) {
+                long bit = Long.lowestOneBit(backslash);
+                if (escapeCount == escapes.length) escapes = Arrays.copyOf(escapes, escapeCount * 2);
+                escapes[escapeCount++] = base + Long.numberOfTrailingZeros(bit);
+                if (bit == Long.MIN_VALUE) {
+                    prevEscaped = true;
+                } else {
+                    escaped |= bit << 1;
+                    backslash &= ~(bit << 1);
+                }
+                backslash &= ~bit;
+            }
+            quote &= ~escaped;
+            
+            // the bytes from an opening quote up to (but not
+            // including) the closing quote are inside a string
+            long inString = prefixXor(quote) ^ prevInString;
+            prevInString = inString >> 63;
+            
+            // the first byte of anything which is not an operator,
+            // whitespace or a string is the start of a scalar
+            long scalar = ~(operator | whitespace | quote | inString);
+            long scalarStart = scalar & ~((scalar << 1) | prevScalar);
+            prevScalar = scalar >>> 63;
+            
+            long structural = (operator & ~inString)
+                            | (quote & inString)
+                            | scalarStart;
+            // ignore the padding
+            if (n < BLOCK_SIZE) structural &= (1L << n) - 1;
+            
+            if (size + Long.bitCount(structural) > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, size + BLOCK_SIZE));
+            }
+            while (structural != 0) {
+                positions[size++] = base + Long.numberOfTrailingZeros(structural);
+                structural &= structural - 1;
+            }
+        }
+        
+        return new StructuralIndex(positions, size, escapes, escapeCount);
+    }
+    
+    // bit N of the result is the xor of bits 0 to N of x
+    private static long prefixXor(long x) {
+        x ^= x << 1;
+        x ^= x << 2;
+        x ^= x << 4;
+        x ^= x << 8;
+        x ^= x << 16;
+        x ^= x << 32;
+        return x;
+    }
+    
+    private static Classifier pickClassifier() {
+        // on 17 the Vector API is slower than the longs are, so it
+        // is only used when asked for with -Djsonstream.vector=true
+        if (Boolean.getBoolean(VECTOR_PROPERTY)) {
+            Classifier vector = vectorClassifier();
+            if (vector != null) return vector;
+        }
+        return new ScalarClassifier();
+    }
+    
+    // the Vector API is still incubating, so it is only there if the
+    // module was added to the command line, and the VectorClassifier
+    // is only there if it was built with it (see the vector profile)
+    static Classifier vectorClassifier() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            return (Classifier) Class.forName(StructuralIndex.class.getPackageName() + ".VectorClassifier")
+                                    .getDeclaredConstructor()
+                                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
+    // classifies 8 bytes at a time in a long, for when
+    // the Vector API is not available
+    static class ScalarClassifier implements Classifier {
+        private static final long ONES = 0x0101010101010101L;
+        private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+        // '{' and '[' (or '}' and ']') only differ by this bit
+        private static final long CASE = 0x2020202020202020L;
+        
+        public void classify(byte[] block, long[] masks) {
+            ByteBuffer words = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+            
+            long quote = 0, backslash = 0, operator = 0, whitespace = 0;
+            for (int i = 0; i < BLOCK_SIZE; i += 8) {
+                long word = words.getLong(i);
+                long bracket = word | CASE;
+                quote      |= gather(equal(word, '"')) << i;
+                backslash  |= gather(equal(word, '\\')) << i;
+                operator   |= gather(equal(bracket, '{') | equal(bracket, '}')
+                                   | equal(word, ',') | equal(word, ':')) << i;
+                whitespace |= gather(equal(word, ' ')  | equal(word, '\t')
+                                   | equal(word, '\n') | equal(word, '\r')) << i;
+            }
+            masks[QUOTE]      = quote;
+            masks[BACKSLASH]  = backslash;
+            masks[OPERATOR]   = operator;
+            masks[WHITESPACE] = whitespace;
+        }
+        
+        // the high bit of each byte in word is set if it equals c
+        private static long equal(long word, char c) {
+            long x = word ^ (ONES * c);
+            return ~(((x & LOWS) + LOWS) | x | LOWS);
+        }
+        
+        // gather the high bit of each byte into the low 8 bits
+        private static long gather(long highs) {
+            return ((highs >>> 7) * 0x0102040810204080L) >>> 56;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.example.jsonstream.tokenizer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+// A run of tokens passed from a TokenProducer to a TokenConsumer in
+// one call, rather than a call for each of them, and kept in parallel
+// arrays so that filling one does not make any objects for the tokens
+// (only for the strings and big numbers in them). It is meant to be
+// filled over and over again, which reuses the same arrays.
+//
+// Ints and longs are kept as longs, floats and doubles as the bits
+// of a double, and strings, keys, errors and big numbers as objects.
+//
+// It is also a TokenCursor over the tokens in it, which is how most
+// consumers read it, or they can look at any of them by index.
+public class TokenBatch implements TokenCursor {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private final Tokens.Type[] types;
+    private final Tokenizer.Frame[] frames;
+    private final long[] numbers;
+    private final Object[] values;
+    private int size;
+    
+    // reading
+    private int position = -1;
+    // the last token of a skipped value, which next() carries on after
+    private int skipTo = -1;
+    
+    // only for adding tokens which have no frame
+    private final Tokenizer.Frame root = new Tokenizer.Frame(Tokenizer.Context.IN_ROOT, null);
+    
+    public TokenBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public TokenBatch(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive, not " + capacity);
+        types   = new Tokens.Type[capacity];
+        frames  = new Tokenizer.Frame[capacity];
+        numbers = new long[capacity];
+        values  = new Object[capacity];
+    }
+    
+    public int size() { return size; }
+    public int capacity() { return types.length; }
+    public boolean isFull() { return size == types.length; }
+    
+    // empty it, ready to be filled again
+    public void clear() {
+        // don't hold on to the values any longer than we need to
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        position = -1;
+        skipTo = -1;
+    }
+    
+    // back to before the first token, to read them again
+    public void rewind() {
+        position = -1;
+        skipTo = -1;
+    }
+    
+    // filling
+    
+    // the current token of the cursor, in the frame it was made in
+    Tokens.Type add(TokenCursor cursor, Tokenizer.Frame frame) {
+        Tokens.Type type = cursor.currentType();
+        long number = 0;
+        Object value = null;
+        switch (type) {
+            case ADD_KEY, ADD_STRING -> value  = cursor.stringValue();
+            case ERROR_TOKEN         -> value  = cursor.currentToken();
+            case ADD_BIG_NUMBER      -> value  = cursor.bigNumberValue();
+            case ADD_INT, ADD_LONG   -> number = cursor.longValue();
+            case ADD_FLOAT,
+                 ADD_DOUBLE          -> number = Double.doubleToRawLongBits(cursor.doubleValue());
+            default                  -> {}
+        }
+        add(type, frame, number, value);
+        return type;
+    }
+    
+    public void add(Tokens.Token token) {
+        Tokens.Type type = token.getType();
+        long number = 0;
+        Object value = null;
+        switch (type) {
+            case ADD_KEY        -> value  = ((Tokens.AddKey) token).getValue();
+            case ADD_STRING     -> value  = ((Tokens.AddString) token).getValue();
+            case ERROR_TOKEN    -> value  = token;
+            case ADD_BIG_NUMBER -> value  = ((Tokens.AddBigNumber) token).getValue();
+            case ADD_INT        -> number = ((Tokens.AddInt) token).getValue();
+            case ADD_LONG       -> number = ((Tokens.AddLong) token).getValue();
+            case ADD_FLOAT      -> number = Double.doubleToRawLongBits(((Tokens.AddFloat) token).getValue());
+            case ADD_DOUBLE     -> number = Double.doubleToRawLongBits(((Tokens.AddDouble) token).getValue());
+            default             -> {}
+        }
+        add(type, frameOf(token), number, value);
+    }
+    
+    private void add(Tokens.Type type, Tokenizer.Frame frame, long number, Object value) {
+        if (isFull()) throw new IllegalStateException("The batch is full, at " + size + " tokens");
+        types[size]   = type;
+        frames[size]  = frame;
+        numbers[size] = number;
+        values[size]  = value;
+        size++;
+    }
+    
+    // a token only has the whole context, so we rebuild the frames,
+    // sharing them with the token before it as far as they match
+    private Tokenizer.Frame frameOf(Tokens.Token token) {
+        Tokenizer.Context[] context = token.getContext();
+        if (context == null) return root;
+        
+        Tokenizer.Frame frame = size > 0 ? frames[size - 1] : root;
+        while (frame.getDepth() > context.length) frame = frame.getParent();
+        while (frame.getDepth() > 1 && !matches(frame, context)) frame = frame.getParent();
+        for (int i = frame.getDepth(); i < context.length; i++) frame = frame.push(context[i]);
+        return frame;
+    }
+    
+    private static boolean matches(Tokenizer.Frame frame, Tokenizer.Context[] context) {
+        for (Tokenizer.Frame f = frame; f != null; f = f.getParent()) {
+            if (context[f.getDepth() - 1] != f.getContext()) return false;
+        }
+        return true;
+    }
+    
+    // by index
+    
+    public Tokens.Type type(int i) {
+        return types[check(i)];
+    }
+    
+    public int depth(int i) {
+        return frames[check(i)].getDepth();
+    }
+    
+    public Tokens.Token token(int i) {
+        Tokens.Token token = switch (types[check(i)]) {
+            case NO_TOKEN        -> new Tokens.NoToken();
+            case ERROR_TOKEN     -> copy((Tokens.ErrorToken) values[i]);
+            case NEED_MORE_INPUT -> new Tokens.NeedMoreInput();
+            case END_DOCUMENT    -> new Tokens.EndDocument();
+            case START_OBJECT    -> new Tokens.StartObject();
+            case END_OBJECT      -> new Tokens.EndObject();
+            case START_PROPERTY  -> new Tokens.StartProperty();
+            case END_PROPERTY    -> new Tokens.EndProperty();
+            case ADD_KEY         -> new Tokens.AddKey((String) values[i]);
+            case START_ARRAY     -> new Tokens.StartArray();
+            case END_ARRAY       -> new Tokens.EndArray();
+            case START_ITEM      -> new Tokens.StartItem();
+            case END_ITEM        -> new Tokens.EndItem();
+            case ADD_TRUE        -> new Tokens.AddTrue();
+            case ADD_FALSE       -> new Tokens.AddFalse();
+            case ADD_NULL        -> new Tokens.AddNull();
+            case ADD_STRING      -> new Tokens.AddString((String) values[i]);
+            case ADD_INT         -> new Tokens.AddInt((int) numbers[i]);
+            case ADD_FLOAT       -> new Tokens.AddFloat((float) Double.longBitsToDouble(numbers[i]));
+            case ADD_LONG        -> new Tokens.AddLong(numbers[i]);
+            case ADD_DOUBLE      -> new Tokens.AddDouble(Double.longBitsToDouble(numbers[i]));
+            case ADD_BIG_NUMBER  -> new Tokens.AddBigNumber((BigDecimal) values[i]);
+        };
+        token.setContext(frames[i]);
+        return token;
+    }
+    
+    // errors are kept as the tokens themselves, for the offsets
+    static Tokens.ErrorToken copy(Tokens.ErrorToken error) {
+        return new Tokens.ErrorToken(error.getMsg(), error.getStart(), error.getEnd());
+    }
+    
+    private int check(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("No token at " + i + " in a batch of " + size);
+        return i;
+    }
+    
+    // cursor
+    
+    public Tokens.Type next() {
+        if (skipTo >= 0) {
+            position = skipTo;
+            skipTo = -1;
+        }
+        if (position + 1 >= size) {
+            position = size;
+            return Tokens.Type.NO_TOKEN;
+        }
+        return types[++position];
+    }
+    
+    public Tokens.Type currentType() {
+        if (position < 0) return null;
+        return position < size ? types[position] : Tokens.Type.NO_TOKEN;
+    }
+    
+    public boolean isDone() { return (skipTo >= 0 ? skipTo : position) + 1 >= size; }
+    
+    // only within this batch, the rest of the value and the token
+    // after it (or the error it ends in) have to be in here too, if
+    // it runs out, or on to a NeedMoreInput, this throws an
+    // IllegalStateException. Either way the current token stays the
+    // same until next(), which is the same as the Tokenizer. A
+    // batch is shared by everything reading it (see TokenBroadcaster)
+    // so it can't carry a skip on into the next one, TokenPipeline
+    // can though, as it is the one reading them
+    public void skipValue() {
+        if (position < 0 || position >= size) return;
+        switch (types[position]) {
+            case ADD_KEY, START_ITEM, START_OBJECT, START_ARRAY -> {
+                int depth = frames[position].getDepth();
+                int last = position;
+                // an error is deeper than the value it is in, but it
+                // still ends it, so next() is the error, as it would be
+                // from the Tokenizer
+                while (last + 1 < size && !endsValue(types[last + 1]) && frames[last + 1].getDepth() >= depth) last++;
+                if (last + 1 == size || types[last + 1] == Tokens.Type.NEED_MORE_INPUT) {
+                    throw new IllegalStateException("The value at " + position + " carries on past the end of the batch");
+                }
+                skipTo = last;
+            }
+            default -> {}
+        }
+    }
+    
+    private static boolean endsValue(Tokens.Type type) {
+        return type.isTerminal() || type == Tokens.Type.END_DOCUMENT;
+    }
+    
+    public Tokens.Token currentToken() {
+        return position < size ? token(position) : new Tokens.NoToken();
+    }
+    
+    public int depth() {
+        return frame().getDepth();
+    }
+    
+    public Tokenizer.Context currentContext() {
+        return frame().getContext();
+    }
+    
+    private Tokenizer.Frame frame() {
+        return position >= 0 && position < size ? frames[position] : root;
+    }
+    
+    public String currentKey() {
+        return currentType() == Tokens.Type.ADD_KEY ? (String) values[position] : null;
+    }
+    
+    public String stringValue() {
+        Tokens.Type type = currentType();
+        if (type != Tokens.Type.ADD_STRING && type != Tokens.Type.ADD_KEY) throw notA("string");
+        return (String) values[position];
+    }
+    
+    public int intValue() {
+        if (currentType() != Tokens.Type.ADD_INT) throw notA("int");
+        return (int) numbers[position];
+    }
+    
+    public long longValue() {
+        Tokens.Type type = currentType();
+        if (type != Tokens.Type.ADD_INT && type != Tokens.Type.ADD_LONG) throw notA("long");
+        return numbers[position];
+    }
+    
+    public double doubleValue() {
+        Tokens.Type type = currentType();
+        if (type == null) throw notA("double");
+        return switch (type) {
+            case ADD_INT, ADD_LONG     -> numbers[position];
+            case ADD_FLOAT, ADD_DOUBLE -> Double.longBitsToDouble(numbers[position]);
+            case ADD_BIG_NUMBER        -> ((BigDecimal) values[position]).doubleValue();
+            default                    -> throw notA("double");
+        };
+    }
+    
+    public BigDecimal bigNumberValue() {
+        Tokens.Type type = currentType();
+        if (type == null) throw notA("number");
+        return switch (type) {
+            case ADD_INT, ADD_LONG -> BigDecimal.valueOf(numbers[position]);
+            case ADD_DOUBLE        -> BigDecimal.valueOf(Double.longBitsToDouble(numbers[position]));
+            case ADD_BIG_NUMBER    -> (BigDecimal) values[position];
+            default                -> throw notA("number");
+        };
+    }
+    
+    public String errorMessage() {
+        return currentType() == Tokens.Type.ERROR_TOKEN ? ((Tokens.ErrorToken) values[position]).getMsg() : null;
+    }
+    
+    private IllegalStateException notA(String what) {
+        return new IllegalStateException("The current token is " + currentType() + ", not a " + what);
+    }
+    
+    @Override
+    public String toString() {
+        return "TokenBatch (size: " + size + ", capacity: " + types.length + ", position: " + position + ")";
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.jsonstream.tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Sends the tokens of one producer to any number of consumers, so the
+// document is only tokenized once however many things want to see it
+// (say a Parser, an ObjectQuery and something counting the tokens).
+//
+// The tokens go out a batch at a time, each consumer is given the whole
+// batch in turn, and once a consumer is satisfied it is detached after
+// the batch it was satisfied in, and when they all are we stop, without
+// tokenizing the rest of the document at all.
+//
+// It is a TokenConsumer itself, so it can also be fed by anything that
+// feeds one, like a TokenPipeline or a TokenSubscriber.
+public class TokenBroadcaster implements TokenConsumer {
+    
+    private final List<TokenConsumer> consumers = new ArrayList<>();
+    private final TokenBatch batch;
+    
+    public TokenBroadcaster() {
+        this(TokenBatch.DEFAULT_CAPACITY);
+    }
+    
+    public TokenBroadcaster(int batchSize) {
+        batch = new TokenBatch(batchSize);
+    }
+    
+    public TokenBroadcaster attach(TokenConsumer consumer) {
+        consumers.add(consumer);
+        return this;
+    }
+    
+    public TokenBroadcaster detach(TokenConsumer consumer) {
+        consumers.remove(consumer);
+        return this;
+    }
+    
+    // the ones that still want tokens
+    public List<TokenConsumer> getConsumers() {
+        return List.copyOf(consumers);
+    }
+    
+    // tokenize until the first terminal, and return it, or until every
+    // consumer is satisfied, and return null, after running out of input
+    // this can be called again (once there is more of it)
+    public Tokens.Type broadcast(TokenProducer producer) {
+        while (!isSatisfied()) {
+            producer.produceTokens(batch);
+            consumeBatch(batch);
+            Tokens.Type last = batch.type(batch.size() - 1);
+            if (last.isTerminal()) return last;
+        }
+        return null;
+    }
+    
+    public boolean isSatisfied() {
+        return consumers.isEmpty();
+    }
+    
+    // if any of them are full, we all wait
+    public boolean isFull() {
+        for (TokenConsumer consumer : consumers) {
+            if (consumer.isFull()) return true;
+        }
+        return false;
+    }
+    
+    public void consumeBatch(TokenBatch batch) {
+        for (TokenConsumer consumer : consumers) {
+            batch.rewind();
+            consumer.consumeBatch(batch);
+        }
+        consumers.removeIf(TokenConsumer::isSatisfied);
+    }
+    
+    // one at a time, which goes to all of them the same way
+    
+    public <T extends Tokens.Token> void consumeToken(T token) {
+        for (TokenConsumer consumer : consumers) consumer.consumeToken(token);
+        consumers.removeIf(TokenConsumer::isSatisfied);
+    }
+    
+    public void consumeToken(Tokens.NoToken token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.ErrorToken token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.NeedMoreInput token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.EndDocument token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.StartObject token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.EndObject token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.StartProperty token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.EndProperty token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.StartArray token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.EndArray token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.StartItem token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.EndItem token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddKey token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddString token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddInt token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddFloat token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddLong token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddDouble token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddBigNumber token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddTrue token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddFalse token) { consumeToken((Tokens.Token) token); }
+    public void consumeToken(Tokens.AddNull token) { consumeToken((Tokens.Token) token); }
+}
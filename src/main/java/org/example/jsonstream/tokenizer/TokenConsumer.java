@@ -2,7 +2,17 @@ package org.example.jsonstream.tokenizer;
 
 public interface TokenConsumer {
     
-    // TODO - add a isFull method
+    // true if the consumer can't take any more tokens for now, which
+    // a TokenSubscriber checks before it asks for any more of them
+    default boolean isFull() {
+        return false;
+    }
+    
+    // true once the consumer doesn't want any more tokens at all, so
+    // a TokenBroadcaster can stop sending it them
+    default boolean isSatisfied() {
+        return false;
+    }
     
     void consumeToken(Tokens.NoToken       token);
     void consumeToken(Tokens.ErrorToken    token);
@@ -22,10 +32,29 @@ public interface TokenConsumer {
     void consumeToken(Tokens.AddFalse      token);
     void consumeToken(Tokens.AddNull       token);
     
+    // these came later, so a consumer written before them still works,
+    // anything which doesn't wait for input, or only ever sees the one
+    // document, can ignore the first two
+    default void consumeToken(Tokens.NeedMoreInput token) {}
+    default void consumeToken(Tokens.EndDocument   token) {}
+    
+    // and the numbers which aren't an int are the float they used to be
+    default void consumeToken(Tokens.AddLong      token) { consumeToken(asFloat(token, token.getValue())); }
+    default void consumeToken(Tokens.AddDouble    token) { consumeToken(asFloat(token, (float) token.getValue())); }
+    default void consumeToken(Tokens.AddBigNumber token) { consumeToken(asFloat(token, token.getValue().floatValue())); }
+    
+    private static Tokens.AddFloat asFloat(Tokens.Token token, float value) {
+        Tokens.AddFloat f = new Tokens.AddFloat(value);
+        f.setContext(token.getContext());
+        return f;
+    }
+    
     default <T extends Tokens.Token> void consumeToken(T token) {
         switch (token.getType()) {
             case NO_TOKEN       -> consumeToken((Tokens.NoToken)      token);
             case ERROR_TOKEN    -> consumeToken((Tokens.ErrorToken)    token);
+            case NEED_MORE_INPUT -> consumeToken((Tokens.NeedMoreInput) token);
+            case END_DOCUMENT   -> consumeToken((Tokens.EndDocument)   token);
             case START_ARRAY    -> consumeToken((Tokens.StartArray)    token);
             case END_ARRAY      -> consumeToken((Tokens.EndArray)      token);
             case START_ITEM     -> consumeToken((Tokens.StartItem)     token);
@@ -41,6 +70,15 @@ public interface TokenConsumer {
             case ADD_STRING     -> consumeToken((Tokens.AddString)     token);
             case ADD_INT        -> consumeToken((Tokens.AddInt)        token);
             case ADD_FLOAT      -> consumeToken((Tokens.AddFloat)      token);
+            case ADD_LONG       -> consumeToken((Tokens.AddLong)       token);
+            case ADD_DOUBLE     -> consumeToken((Tokens.AddDouble)     token);
+            case ADD_BIG_NUMBER -> consumeToken((Tokens.AddBigNumber)  token);
         }
     }
+    
+    // all of the tokens in the batch, in order, which is one token
+    // at a time unless the consumer can do better than that
+    default void consumeBatch(TokenBatch batch) {
+        for (int i = 0; i < batch.size(); i++) consumeToken(batch.token(i));
+    }
 }
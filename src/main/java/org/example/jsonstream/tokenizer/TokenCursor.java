@@ -0,0 +1,40 @@
+package org.example.jsonstream.tokenizer;
+
+import java.math.BigDecimal;
+
+// A pull API over the same tokens a TokenProducer would produce, but
+// without making an object for each of them. next() moves on to the
+// next token and the accessors describe the current one, the values
+// are only valid until the next call to next().
+public interface TokenCursor {
+    
+    Tokens.Type next();
+    Tokens.Type currentType();
+    boolean isDone();
+    
+    // skip the value the current token starts, so the next token is
+    // the one after it, which is either the value of a key or item
+    // or the rest of an object or array (up to its closing token),
+    // anywhere else this does nothing
+    void skipValue();
+    
+    // the current token as an object, if one is needed after all
+    Tokens.Token currentToken();
+    
+    int depth();
+    Tokenizer.Context currentContext();
+    
+    // the key when on an ADD_KEY, and null otherwise
+    String currentKey();
+    
+    // these throw an IllegalStateException if the
+    // current token does not have that kind of value
+    String stringValue();
+    int intValue();
+    long longValue();
+    double doubleValue();
+    BigDecimal bigNumberValue();
+    
+    // the message when on an ERROR_TOKEN, and null otherwise
+    String errorMessage();
+}
@@ -0,0 +1,43 @@
+package org.example.jsonstream.tokenizer;
+
+import java.math.BigDecimal;
+
+// The tokens pushed as calls, with the values passed as they are,
+// see Tokenizer.drive(TokenHandler). Nothing is made for a token
+// other than the strings (and big numbers) which are passed on.
+//
+// Everything does nothing unless it is overridden, so a handler
+// only has to deal with the tokens it actually cares about.
+public interface TokenHandler {
+    
+    default void startObject() {}
+    default void endObject() {}
+    default void startProperty() {}
+    default void endProperty() {}
+    default void addKey(String key) {}
+    
+    default void startArray() {}
+    default void endArray() {}
+    default void startItem() {}
+    default void endItem() {}
+    
+    default void addString(String value) {}
+    default void addInt(int value) {}
+    default void addLong(long value) {}
+    default void addDouble(double value) {}
+    default void addBigNumber(BigDecimal value) {}
+    default void addTrue() {}
+    default void addFalse() {}
+    default void addNull() {}
+    
+    // the end of one root value, when there can be more than one
+    default void endDocument() {}
+    
+    default void error(String msg) {}
+    
+    // the same, with where the bad record started and where it
+    // went wrong, see Tokens.ErrorToken
+    default void error(String msg, long start, long end) {
+        error(msg);
+    }
+}
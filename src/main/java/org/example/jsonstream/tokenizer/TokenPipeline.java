@@ -0,0 +1,282 @@
+package org.example.jsonstream.tokenizer;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Runs a TokenProducer on a thread of its own, so that tokenizing the
+// next part of a document overlaps with parsing (or querying) the part
+// before it on another core.
+//
+// The tokens are passed over in a ring of TokenBatch slots, which are
+// all made up front and filled over and over again. There is a counter
+// of the slots which have been filled and one of the slots which have
+// been read, each only written by one side, so there are no locks. It
+// is for one thread filling and one thread reading, never more.
+//
+// The reading side is a TokenProducer and a TokenCursor, so anything
+// that reads one of those can read from here, or drainTo() will hand
+// the batches to a TokenConsumer as they are. The tokens end with the
+// first NoToken, or ErrorToken unless the producer can carry on after
+// it (see Tokenizer.withRecovery), which are passed on like any other,
+// and anything thrown while producing is thrown again when reading.
+//
+// The producer has to block for its input (as a Reader or a file does)
+// rather than run out of it. Anything fed a piece at a time (like a
+// Tokenizer over a FeedableScanner) would have to be fed from another
+// thread while this one is producing, which they aren't safe for, so
+// a NeedMoreInput is an IllegalStateException, thrown when reading.
+// One which has been fed all of its input already is fine.
+public class TokenPipeline implements TokenProducer, TokenCursor, AutoCloseable {
+    
+    public static final int DEFAULT_SLOTS = 16;
+    
+    // what to do while waiting for the other side to catch up
+    public enum WaitStrategy {
+        // the lowest latency, when both threads have a core to themselves
+        SPIN {
+            void idle(int count) { Thread.onSpinWait(); }
+        },
+        // spin for a bit, then let something else run
+        YIELD {
+            void idle(int count) {
+                if (count < SPINS) Thread.onSpinWait();
+                else Thread.yield();
+            }
+        },
+        // spin, then yield, then sleep for a little while each time,
+        // which is the kindest when there are more threads than cores
+        PARK {
+            void idle(int count) {
+                if (count < SPINS) Thread.onSpinWait();
+                else if (count < SPINS + YIELDS) Thread.yield();
+                else LockSupport.parkNanos(PARK_NANOS);
+            }
+        };
+        
+        private static final int SPINS = 100;
+        private static final int YIELDS = 100;
+        private static final long PARK_NANOS = 20_000;
+        
+        // count is how many times we have already waited this time
+        abstract void idle(int count);
+    }
+    
+    private final TokenProducer producer;
+    private final TokenBatch[] slots;
+    private final WaitStrategy wait;
+    
+    private final AtomicLong filled = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean finished;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    
+    // reading, only touched by the reading thread
+    private final TokenBatch empty = new TokenBatch(1);
+    private TokenBatch batch = empty;
+    private boolean done;
+    private int skipDepth;
+    
+    public TokenPipeline(TokenProducer producer) {
+        this(producer, WaitStrategy.PARK);
+    }
+    
+    public TokenPipeline(TokenProducer producer, WaitStrategy wait) {
+        this(producer, DEFAULT_SLOTS, TokenBatch.DEFAULT_CAPACITY, wait);
+    }
+    
+    public TokenPipeline(TokenProducer producer, int slots, int batchSize, WaitStrategy wait) {
+        if (slots < 2) throw new IllegalArgumentException("There must be at least two slots, not " + slots);
+        this.producer = Objects.requireNonNull(producer);
+        this.wait     = Objects.requireNonNull(wait);
+        this.slots    = new TokenBatch[slots];
+        for (int i = 0; i < slots; i++) this.slots[i] = new TokenBatch(batchSize);
+    }
+    
+    // start producing on a new (daemon) thread, which reading will
+    // also do if it has not been started already
+    public TokenPipeline start() {
+        return start((r) -> {
+            Thread thread = new Thread(r, "TokenPipeline");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+    
+    // start producing with the executor, which should give it a thread
+    // of its own, since it only returns once all the tokens are produced
+    // (or it is closed)
+    public TokenPipeline start(Executor executor) {
+        if (!started.compareAndSet(false, true)) throw new IllegalStateException("The pipeline has already been started");
+        executor.execute(this::fill);
+        return this;
+    }
+    
+    // stop early, from the reading side, when the rest is not wanted
+    public void close() {
+        closed = true;
+        done = true;
+        end();
+    }
+    
+    // producing
+    
+    private void fill() {
+        try {
+            for (long sequence = 0; !closed; sequence++) {
+                // the slot is the one we filled a lap ago, so wait for it to be read
+                for (int count = 0; sequence - read.get() >= slots.length; count++) {
+                    if (closed) return;
+                    wait.idle(count);
+                }
+                
+                TokenBatch slot = slots[(int) (sequence % slots.length)];
+                producer.produceTokens(slot);
+                
+                filled.lazySet(sequence + 1);
+                
+                Tokens.Type last = slot.type(slot.size() - 1);
+                if (last == Tokens.Type.NEED_MORE_INPUT) {
+                    throw new IllegalStateException("The producer ran out of input, a TokenPipeline can't be fed as it goes");
+                }
+                if (last == Tokens.Type.NO_TOKEN || last == Tokens.Type.ERROR_TOKEN && producer.isDone()) return;
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            finished = true;
+        }
+    }
+    
+    // reading
+    
+    // hand the batches to the consumer as they are, on this thread,
+    // up to and including the last of the tokens
+    public void drainTo(TokenConsumer consumer) {
+        // the rest of the one the cursor was part way through
+        while (!batch.isDone()) {
+            batch.next();
+            consumer.consumeToken(batch.currentToken());
+        }
+        while (!done && take()) {
+            consumer.consumeBatch(batch);
+            if (batch.type(batch.size() - 1) == Tokens.Type.NO_TOKEN) done = true;
+        }
+        end();
+    }
+    
+    // on to the next slot, giving back the one we were reading, and
+    // false once there are no more of them
+    private boolean take() {
+        if (batch != empty) {
+            read.lazySet(read.get() + 1);
+            batch = empty;
+        }
+        if (done) return false;
+        if (!started.get()) start();
+        
+        long sequence = read.get();
+        for (int count = 0; filled.get() == sequence; count++) {
+            if (finished && filled.get() == sequence) {
+                done = true;
+                Throwable t = failure;
+                if (t instanceof RuntimeException e) throw e;
+                if (t instanceof Error e) throw e;
+                return false;
+            }
+            wait.idle(count);
+        }
+        batch = slots[(int) (sequence % slots.length)];
+        batch.rewind();
+        return true;
+    }
+    
+    // leave the cursor on a NoToken
+    private void end() {
+        if (batch != empty) {
+            read.lazySet(read.get() + 1);
+            batch = empty;
+        }
+        empty.rewind();
+        empty.next();
+    }
+    
+    private Tokens.Type advance() {
+        while (!batch.isDone() || take()) {
+            Tokens.Type type = batch.next();
+            switch (type) {
+                // the producer failed on it, which take() throws next
+                case NEED_MORE_INPUT -> {}
+                case NO_TOKEN -> {
+                    done = true;
+                    return type;
+                }
+                default -> {
+                    return type;
+                }
+            }
+        }
+        end();
+        return Tokens.Type.NO_TOKEN;
+    }
+    
+    public Tokens.Type next() {
+        Tokens.Type type = advance();
+        // a skipped value can carry on over several batches
+        while (skipDepth > 0) {
+            if (type.isTerminal() || batch.depth() < skipDepth) {
+                skipDepth = 0;
+                break;
+            }
+            type = advance();
+        }
+        return type;
+    }
+    
+    public Tokens.Type currentType() { return batch.currentType(); }
+    public boolean isDone() { return done; }
+    
+    // the same as a TokenBatch, but over the end of the batch
+    public void skipValue() {
+        Tokens.Type type = batch.currentType();
+        if (type == null) return;
+        switch (type) {
+            case ADD_KEY, START_ITEM, START_OBJECT, START_ARRAY -> skipDepth = batch.depth();
+            default -> {}
+        }
+    }
+    
+    public Tokens.Token currentToken() { return batch.currentToken(); }
+    
+    public int depth() { return batch.depth(); }
+    public Tokenizer.Context currentContext() { return batch.currentContext(); }
+    public String currentKey() { return batch.currentKey(); }
+    
+    public String stringValue() { return batch.stringValue(); }
+    public int intValue() { return batch.intValue(); }
+    public long longValue() { return batch.longValue(); }
+    public double doubleValue() { return batch.doubleValue(); }
+    public BigDecimal bigNumberValue() { return batch.bigNumberValue(); }
+    public String errorMessage() { return batch.errorMessage(); }
+    
+    // producer
+    
+    public Tokens.Token produceToken() {
+        next();
+        return currentToken();
+    }
+    
+    public Stream<Tokens.Token> stream() {
+        return Stream.iterate(
+            produceToken(),
+            (t) -> !t.isTerminal(),
+            (t) -> produceToken()
+        );
+    }
+}
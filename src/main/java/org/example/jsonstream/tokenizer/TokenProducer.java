@@ -9,6 +9,19 @@ public interface TokenProducer {
     boolean isDone();
     Stream<Tokens.Token> stream();
     
+    // fill the batch with the next tokens, up to and including
+    // the first terminal one, and return how many there are
+    default int produceTokens(TokenBatch batch) {
+        batch.clear();
+        while (!batch.isFull()) {
+            Tokens.Token token = produceToken();
+            batch.add(token);
+            if (token.isTerminal()) break;
+        }
+        return batch.size();
+    }
+    
+    // the very tokens in the list, whatever they are
     static TokenProducer of(List<Tokens.Token> tokens) {
         Iterator<Tokens.Token> i = tokens.iterator();
         // TODO - make this a concrete class, but
@@ -29,4 +42,11 @@ public interface TokenProducer {
             }
         };
     }
+    
+    // recorded onto a TokenTape, so the list can go, the tokens are
+    // made again as they are replayed (and it is a TokenCursor too),
+    // but a tape won't take a NoToken or a NeedMoreInput
+    static TokenProducer tapeOf(List<Tokens.Token> tokens) {
+        return TokenTape.of(tokens);
+    }
 }
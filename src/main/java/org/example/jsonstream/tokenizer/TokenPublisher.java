@@ -0,0 +1,180 @@
+package org.example.jsonstream.tokenizer;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A TokenProducer as a Flow.Publisher, which only produces tokens
+// as they are requested, so a slow subscriber holds the producer
+// back rather than the tokens piling up in between. The tokens are
+// produced a batch at a time on the executor, and no more than the
+// one batch is held on to while waiting for more demand.
+//
+// A producer can only be read once, so there is only one subscriber.
+// An ErrorToken is passed on like any other token, and then the
+// subscriber is completed (unless the producer carries on after it,
+// see Tokenizer.withRecovery), but anything thrown while producing
+// goes to onError. When the producer needs more input (a FeedableScanner)
+// this waits until resume() is called, after it has been fed.
+public class TokenPublisher implements Flow.Publisher<Tokens.Token> {
+    
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    
+    private final TokenProducer producer;
+    private final Executor executor;
+    private final TokenBatch batch;
+    
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private volatile Subscription subscription;
+    
+    // how often resume() has been called, so we can tell if it
+    // was called while we were producing
+    private final AtomicLong resumes = new AtomicLong();
+    
+    public TokenPublisher(TokenProducer producer) {
+        this(producer, ForkJoinPool.commonPool());
+    }
+    
+    public TokenPublisher(TokenProducer producer, Executor executor) {
+        this(producer, executor, DEFAULT_BATCH_SIZE);
+    }
+    
+    public TokenPublisher(TokenProducer producer, Executor executor, int batchSize) {
+        this.producer = Objects.requireNonNull(producer);
+        this.executor = Objects.requireNonNull(executor);
+        this.batch    = new TokenBatch(batchSize);
+    }
+    
+    public void subscribe(Flow.Subscriber<? super Tokens.Token> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {}
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("A TokenPublisher can only have one subscriber"));
+            return;
+        }
+        subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+    
+    // carry on after the producer ran out of input, once it has more
+    public void resume() {
+        resumes.incrementAndGet();
+        Subscription s = subscription;
+        if (s != null) s.schedule();
+    }
+    
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Tokens.Token> subscriber;
+        
+        private final AtomicLong demand = new AtomicLong();
+        // how many times we have been asked to run, so that we
+        // only ever run once at a time, and never miss a request
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean badRequest;
+        private volatile long badRequestOf;
+        
+        // only touched while running
+        private int next;
+        private boolean done;
+        private long starvedAt = -1;
+        
+        Subscription(Flow.Subscriber<? super Tokens.Token> subscriber) {
+            this.subscriber = subscriber;
+        }
+        
+        public void request(long n) {
+            if (n <= 0) {
+                badRequestOf = n;
+                badRequest   = true;
+            } else {
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            schedule();
+        }
+        
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        void schedule() {
+            if (work.getAndIncrement() == 0) executor.execute(this);
+        }
+        
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+        
+        private void drain() {
+            while (!done && !cancelled) {
+                if (badRequest) {
+                    finish();
+                    subscriber.onError(new IllegalArgumentException("request() must be positive, not " + badRequestOf));
+                    return;
+                }
+                if (demand.get() == 0) return;
+                
+                if (next == batch.size()) {
+                    // still waiting for more input
+                    if (starvedAt == resumes.get()) return;
+                    starvedAt = -1;
+                    
+                    long seen = resumes.get();
+                    try {
+                        producer.produceTokens(batch);
+                    } catch (RuntimeException e) {
+                        finish();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    next = 0;
+                    
+                    // the tokens before it still go out
+                    if (batch.type(batch.size() - 1) == Tokens.Type.NEED_MORE_INPUT) starvedAt = seen;
+                }
+                
+                Tokens.Type type = batch.type(next);
+                if (type == Tokens.Type.NEED_MORE_INPUT) {
+                    next++;
+                    continue;
+                }
+                if (type == Tokens.Type.NO_TOKEN) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                
+                Tokens.Token token = batch.token(next++);
+                demand.decrementAndGet();
+                try {
+                    subscriber.onNext(token);
+                } catch (RuntimeException e) {
+                    // it broke the rules, so we stop (see §2.13)
+                    cancelled = true;
+                    return;
+                }
+                if (type == Tokens.Type.ERROR_TOKEN && producer.isDone()) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+            }
+        }
+        
+        private void finish() {
+            done = true;
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.jsonstream.tokenizer;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A TokenConsumer as a Flow.Subscriber, which asks for a batch of
+// tokens at a time, and for more once it is half way through them,
+// but only while the consumer is not full. Once the consumer has
+// room again, resume() will ask for more.
+//
+// The tokens are consumed on the executor (or on whichever thread
+// delivers them, by default) and there are never more of them waiting
+// to be consumed than have been asked for, so it is always bounded.
+public class TokenSubscriber implements Flow.Subscriber<Tokens.Token> {
+    
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    
+    private final TokenConsumer consumer;
+    private final Executor executor;
+    private final int batchSize;
+    
+    private final Queue<Tokens.Token> queue = new ConcurrentLinkedQueue<>();
+    // how many times we have been asked to run, see TokenPublisher
+    private final AtomicInteger work = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    
+    private volatile Flow.Subscription subscription;
+    private volatile boolean completed;
+    private volatile Throwable failure;
+    
+    // only touched while running, asked for but not consumed yet
+    private long outstanding;
+    
+    public TokenSubscriber(TokenConsumer consumer) {
+        this(consumer, Runnable::run);
+    }
+    
+    public TokenSubscriber(TokenConsumer consumer, Executor executor) {
+        this(consumer, executor, DEFAULT_BATCH_SIZE);
+    }
+    
+    public TokenSubscriber(TokenConsumer consumer, Executor executor, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive, not " + batchSize);
+        this.consumer  = Objects.requireNonNull(consumer);
+        this.executor  = Objects.requireNonNull(executor);
+        this.batchSize = batchSize;
+    }
+    
+    // done once every token has been consumed
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+    
+    // ask for more, once the consumer is no longer full
+    public void resume() {
+        schedule();
+    }
+    
+    public void onSubscribe(Flow.Subscription s) {
+        if (subscription != null) {
+            s.cancel();
+            return;
+        }
+        subscription = s;
+        schedule();
+    }
+    
+    public void onNext(Tokens.Token token) {
+        queue.offer(Objects.requireNonNull(token));
+        schedule();
+    }
+    
+    public void onError(Throwable t) {
+        failure = Objects.requireNonNull(t);
+        completed = true;
+        schedule();
+    }
+    
+    public void onComplete() {
+        completed = true;
+        schedule();
+    }
+    
+    private void schedule() {
+        if (work.getAndIncrement() == 0) executor.execute(this::run);
+    }
+    
+    private void run() {
+        int missed = 1;
+        do {
+            drain();
+            missed = work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+    
+    private void drain() {
+        if (completion.isDone()) return;
+        // this has to be read before we look in the queue, every token
+        // comes before the completion, so if it was complete by now
+        // they are all in there, but if we looked after, one could
+        // arrive just after we found it empty, and be dropped
+        boolean done = completed;
+        try {
+            Tokens.Token token;
+            while ((token = queue.poll()) != null) {
+                consumer.consumeToken(token);
+                outstanding--;
+                request();
+            }
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            queue.clear();
+            completion.completeExceptionally(e);
+            return;
+        }
+        
+        if (done && queue.isEmpty()) {
+            if (failure != null) {
+                completion.completeExceptionally(failure);
+            } else {
+                completion.complete(null);
+            }
+            return;
+        }
+        request();
+    }
+    
+    private void request() {
+        Flow.Subscription s = subscription;
+        if (s == null || completed || outstanding > batchSize / 2 || consumer.isFull()) return;
+        long n = batchSize - outstanding;
+        outstanding += n;
+        s.request(n);
+    }
+}
@@ -0,0 +1,414 @@
+package org.example.jsonstream.tokenizer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+// A whole stream of tokens recorded flat, so it can be replayed as
+// many times as needed without keeping an object for each token.
+//
+// Each token is a single long, the type in the top byte and a payload
+// in the rest of it. The start of an object, property, array or item
+// has the index of its matching end (and the end has the index of its
+// start), so a whole container can be skipped over in one step. Keys,
+// strings, errors and big numbers are kept to one side in values, and
+// longs and doubles in numbers, while ints and floats fit in the entry.
+//
+// Replaying it is the same as reading from a Tokenizer, either as a
+// TokenCursor or by producing the tokens, and it can be rewound or
+// moved to any position. The context is rebuilt as it is replayed, a
+// tape of part of a document is replayed as if it was the whole thing.
+public class TokenTape implements TokenProducer, TokenCursor {
+    
+    private static final Tokens.Type[] TYPES = Tokens.Type.values();
+    
+    private static final int  TYPE_SHIFT = 56;
+    private static final long PAYLOAD    = (1L << TYPE_SHIFT) - 1;
+    
+    // a start whose end has not been recorded (yet)
+    private static final long NO_END = PAYLOAD;
+    
+    private long[] entries = new long[64];
+    private int size;
+    
+    private Object[] values = new Object[16];
+    private int valueCount;
+    
+    private long[] numbers = new long[16];
+    private int numberCount;
+    
+    // the starts which are still waiting for their end
+    private int[] open = new int[16];
+    private int openCount;
+    
+    // replaying
+    private final Tokenizer.Frame root = new Tokenizer.Frame(Tokenizer.Context.IN_ROOT, null);
+    private Tokenizer.Frame frame = root;
+    private int position = -1;
+    private Tokens.Type type;
+    // the last token of a value being skipped, which next() carries
+    // on after, or -1 if nothing is being skipped
+    private int skipTo = -1;
+    
+    public TokenTape() {}
+    
+    // everything up to the first terminal token, which
+    // is only kept if it is an error
+    public static TokenTape record(TokenCursor cursor) {
+        TokenTape tape = new TokenTape();
+        Tokens.Type type;
+        while (!(type = cursor.next()).isTerminal()) tape.append(cursor);
+        if (type == Tokens.Type.ERROR_TOKEN) tape.append(cursor);
+        return tape;
+    }
+    
+    public static TokenTape of(List<Tokens.Token> tokens) {
+        TokenTape tape = new TokenTape();
+        for (Tokens.Token token : tokens) tape.append(token);
+        return tape;
+    }
+    
+    public int size() { return size; }
+    
+    // recording
+    
+    // the current token of the cursor
+    public TokenTape append(TokenCursor cursor) {
+        Tokens.Type type = cursor.currentType();
+        return switch (type) {
+            case ADD_KEY        -> add(type, value(cursor.currentKey()));
+            case ADD_STRING     -> add(type, value(cursor.stringValue()));
+            case ERROR_TOKEN    -> add(type, value(cursor.currentToken()));
+            case ADD_BIG_NUMBER -> add(type, value(cursor.bigNumberValue()));
+            case ADD_INT        -> add(type, cursor.intValue() & 0xFFFFFFFFL);
+            case ADD_FLOAT      -> add(type, Float.floatToRawIntBits((float) cursor.doubleValue()) & 0xFFFFFFFFL);
+            case ADD_LONG       -> add(type, number(cursor.longValue()));
+            case ADD_DOUBLE     -> add(type, number(Double.doubleToRawLongBits(cursor.doubleValue())));
+            default             -> add(type, 0);
+        };
+    }
+    
+    public TokenTape append(Tokens.Token token) {
+        Tokens.Type type = token.getType();
+        return switch (type) {
+            case ADD_KEY        -> add(type, value(((Tokens.AddKey) token).getValue()));
+            case ADD_STRING     -> add(type, value(((Tokens.AddString) token).getValue()));
+            case ERROR_TOKEN    -> add(type, value(token));
+            case ADD_BIG_NUMBER -> add(type, value(((Tokens.AddBigNumber) token).getValue()));
+            case ADD_INT        -> add(type, ((Tokens.AddInt) token).getValue() & 0xFFFFFFFFL);
+            case ADD_FLOAT      -> add(type, Float.floatToRawIntBits(((Tokens.AddFloat) token).getValue()) & 0xFFFFFFFFL);
+            case ADD_LONG       -> add(type, number(((Tokens.AddLong) token).getValue()));
+            case ADD_DOUBLE     -> add(type, number(Double.doubleToRawLongBits(((Tokens.AddDouble) token).getValue())));
+            default             -> add(type, 0);
+        };
+    }
+    
+    private TokenTape add(Tokens.Type type, long payload) {
+        if (type == Tokens.Type.NO_TOKEN || type == Tokens.Type.NEED_MORE_INPUT) {
+            throw new IllegalArgumentException("Only complete tokens can be recorded, not " + type);
+        }
+        
+        if (size == entries.length) entries = Arrays.copyOf(entries, size * 2);
+        
+        if (isStart(type)) {
+            if (openCount == open.length) open = Arrays.copyOf(open, openCount * 2);
+            open[openCount++] = size;
+            payload = NO_END;
+        } else if (isEnd(type)) {
+            // an end with nothing to match points at itself
+            int start = openCount > 0 ? open[--openCount] : size;
+            entries[start] = (entries[start] & ~PAYLOAD) | size;
+            payload = start;
+        }
+        
+        entries[size++] = ((long) type.ordinal() << TYPE_SHIFT) | payload;
+        return this;
+    }
+    
+    private long value(Object value) {
+        if (valueCount == values.length) values = Arrays.copyOf(values, valueCount * 2);
+        values[valueCount] = value;
+        return valueCount++;
+    }
+    
+    private long number(long bits) {
+        if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+        numbers[numberCount] = bits;
+        return numberCount++;
+    }
+    
+    // moving around
+    
+    // the index of the current token, or -1 before the first one
+    public int position() { return position; }
+    
+    // back to before the first token
+    public void rewind() {
+        position = -1;
+        frame = root;
+        type = null;
+        skipTo = -1;
+    }
+    
+    // make the token at that index the current one
+    public void seek(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("No token at " + index + " in a tape of " + size);
+        position = index;
+        type = typeAt(index);
+        frame = frameAt(index);
+        skipTo = -1;
+    }
+    
+    // on the start of a container this moves to its matching end, so
+    // next() carries on after it, anywhere else it does nothing
+    public void skipContainer() {
+        if (position < 0 || position >= size || !isStart(type)) return;
+        skipTo = -1;
+        long end = payloadAt(position);
+        if (end == NO_END) {
+            // it was never closed, so it goes on to the end
+            position = size;
+            type = Tokens.Type.NO_TOKEN;
+            frame = root;
+            return;
+        }
+        position = (int) end;
+        type = typeAt(position);
+        frame = frame.getParent();
+    }
+    
+    // the same as the Tokenizer, this is the current token until
+    // next(), which is the token after the value (or its error)
+    public void skipValue() {
+        if (position < 0 || position >= size) return;
+        switch (type) {
+            case ADD_KEY, START_ITEM -> {
+                // to the end of the value which comes next, if it
+                // is one, a bad value is the error it was
+                int value = position + 1;
+                if (value >= size || typeAt(value) == Tokens.Type.ERROR_TOKEN) return;
+                skipTo = isStart(typeAt(value)) ? endOf(value) : value;
+            }
+            // to just before the matching end, which is next
+            case START_OBJECT, START_ARRAY -> {
+                long end = payloadAt(position);
+                skipTo = end == NO_END ? endOf(position) : (int) end - 1;
+            }
+            default -> {}
+        }
+    }
+    
+    // the end of the container which starts there, or if it was never
+    // closed, whatever came last before the error that cut it short
+    private int endOf(int start) {
+        long end = payloadAt(start);
+        if (end != NO_END) return (int) end;
+        for (int i = start + 1; i < size; i++) {
+            if (typeAt(i) == Tokens.Type.ERROR_TOKEN) return i - 1;
+        }
+        return size - 1;
+    }
+    
+    // the context of the token at that index, found by walking back
+    // over whole containers to the ones which are still open there
+    private Tokenizer.Frame frameAt(int index) {
+        if (typeAt(index) == Tokens.Type.ERROR_TOKEN) {
+            return (index > 0 ? frameAt(index - 1) : root).push(Tokenizer.Context.IN_ERROR);
+        }
+        
+        int[] starts = new int[16];
+        int count = 0;
+        for (int i = index; i >= 0; i--) {
+            Tokens.Type t = typeAt(i);
+            if (t == Tokens.Type.END_DOCUMENT) break;
+            if (isEnd(t)) {
+                i = (int) payloadAt(i);
+            } else if (isStart(t)) {
+                if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                starts[count++] = i;
+            }
+        }
+        
+        Tokenizer.Frame f = root;
+        for (int i = count - 1; i >= 0; i--) f = f.push(contextOf(typeAt(starts[i])));
+        return f;
+    }
+    
+    // cursor
+    
+    public Tokens.Type next() {
+        // the whole of a skipped value leaves us in the same context
+        if (skipTo >= 0) {
+            position = skipTo;
+            skipTo = -1;
+        }
+        if (position + 1 >= size) {
+            position = size;
+            type = Tokens.Type.NO_TOKEN;
+            return type;
+        }
+        
+        type = typeAt(++position);
+        frame = switch (type) {
+            case START_OBJECT, START_PROPERTY,
+                 START_ARRAY, START_ITEM     -> frame.push(contextOf(type));
+            case END_OBJECT, END_PROPERTY,
+                 END_ARRAY, END_ITEM         -> frame.getParent();
+            case ERROR_TOKEN                 -> frame.push(Tokenizer.Context.IN_ERROR);
+            case END_DOCUMENT                -> root;
+            default                          -> frame;
+        };
+        return type;
+    }
+    
+    public Tokens.Type currentType() { return type; }
+    
+    public boolean isDone() { return (skipTo >= 0 ? skipTo : position) + 1 >= size; }
+    
+    public Tokens.Token currentToken() {
+        Tokens.Token token = switch (type) {
+            case NO_TOKEN        -> new Tokens.NoToken();
+            case ERROR_TOKEN     -> TokenBatch.copy((Tokens.ErrorToken) values[(int) payloadAt(position)]);
+            case NEED_MORE_INPUT -> new Tokens.NeedMoreInput();
+            case END_DOCUMENT    -> new Tokens.EndDocument();
+            case START_OBJECT    -> new Tokens.StartObject();
+            case END_OBJECT      -> new Tokens.EndObject();
+            case START_PROPERTY  -> new Tokens.StartProperty();
+            case END_PROPERTY    -> new Tokens.EndProperty();
+            case ADD_KEY         -> new Tokens.AddKey(currentKey());
+            case START_ARRAY     -> new Tokens.StartArray();
+            case END_ARRAY       -> new Tokens.EndArray();
+            case START_ITEM      -> new Tokens.StartItem();
+            case END_ITEM        -> new Tokens.EndItem();
+            case ADD_TRUE        -> new Tokens.AddTrue();
+            case ADD_FALSE       -> new Tokens.AddFalse();
+            case ADD_NULL        -> new Tokens.AddNull();
+            case ADD_STRING      -> new Tokens.AddString(stringValue());
+            case ADD_INT         -> new Tokens.AddInt(intValue());
+            case ADD_FLOAT       -> new Tokens.AddFloat(Float.intBitsToFloat((int) payloadAt(position)));
+            case ADD_LONG        -> new Tokens.AddLong(longValue());
+            case ADD_DOUBLE      -> new Tokens.AddDouble(doubleValue());
+            case ADD_BIG_NUMBER  -> new Tokens.AddBigNumber(bigNumberValue());
+        };
+        token.setContext(frame);
+        return token;
+    }
+    
+    public int depth() { return frame.getDepth(); }
+    
+    public Tokenizer.Context currentContext() { return frame.getContext(); }
+    
+    public String currentKey() {
+        return type == Tokens.Type.ADD_KEY ? (String) values[(int) payloadAt(position)] : null;
+    }
+    
+    public String stringValue() {
+        if (type != Tokens.Type.ADD_STRING && type != Tokens.Type.ADD_KEY) throw notA("string");
+        return (String) values[(int) payloadAt(position)];
+    }
+    
+    public int intValue() {
+        if (type != Tokens.Type.ADD_INT) throw notA("int");
+        return (int) payloadAt(position);
+    }
+    
+    public long longValue() {
+        return switch (type) {
+            case ADD_INT  -> (int) payloadAt(position);
+            case ADD_LONG -> numbers[(int) payloadAt(position)];
+            default       -> throw notA("long");
+        };
+    }
+    
+    public double doubleValue() {
+        return switch (type) {
+            case ADD_INT, ADD_LONG -> longValue();
+            case ADD_FLOAT         -> Float.intBitsToFloat((int) payloadAt(position));
+            case ADD_DOUBLE        -> Double.longBitsToDouble(numbers[(int) payloadAt(position)]);
+            case ADD_BIG_NUMBER    -> bigNumberValue().doubleValue();
+            default                -> throw notA("double");
+        };
+    }
+    
+    // a double is only as exact as the double itself, where
+    // the Tokenizer could go back to the source for it
+    public BigDecimal bigNumberValue() {
+        return switch (type) {
+            case ADD_INT, ADD_LONG -> BigDecimal.valueOf(longValue());
+            case ADD_DOUBLE        -> BigDecimal.valueOf(doubleValue());
+            case ADD_BIG_NUMBER    -> (BigDecimal) values[(int) payloadAt(position)];
+            default                -> throw notA("number");
+        };
+    }
+    
+    public String errorMessage() {
+        return type == Tokens.Type.ERROR_TOKEN ? ((Tokens.ErrorToken) values[(int) payloadAt(position)]).getMsg() : null;
+    }
+    
+    private IllegalStateException notA(String what) {
+        return new IllegalStateException("The current token is " + type + ", not a " + what);
+    }
+    
+    // producer
+    
+    public Tokens.Token produceToken() {
+        next();
+        return currentToken();
+    }
+    
+    public int produceTokens(TokenBatch batch) {
+        batch.clear();
+        while (!batch.isFull()) {
+            next();
+            if (batch.add(this, frame).isTerminal()) break;
+        }
+        return batch.size();
+    }
+    
+    public Stream<Tokens.Token> stream() {
+        return Stream.iterate(
+            produceToken(),
+            (t) -> !t.isTerminal(),
+            (t) -> produceToken()
+        );
+    }
+    
+    // entries
+    
+    private Tokens.Type typeAt(int index) {
+        return TYPES[(int) (entries[index] >>> TYPE_SHIFT)];
+    }
+    
+    private long payloadAt(int index) {
+        return entries[index] & PAYLOAD;
+    }
+    
+    private static boolean isStart(Tokens.Type type) {
+        return switch (type) {
+            case START_OBJECT, START_PROPERTY, START_ARRAY, START_ITEM -> true;
+            default -> false;
+        };
+    }
+    
+    private static boolean isEnd(Tokens.Type type) {
+        return switch (type) {
+            case END_OBJECT, END_PROPERTY, END_ARRAY, END_ITEM -> true;
+            default -> false;
+        };
+    }
+    
+    private static Tokenizer.Context contextOf(Tokens.Type start) {
+        return switch (start) {
+            case START_OBJECT   -> Tokenizer.Context.IN_OBJECT;
+            case START_PROPERTY -> Tokenizer.Context.IN_PROPERTY;
+            case START_ARRAY    -> Tokenizer.Context.IN_ARRAY;
+            default             -> Tokenizer.Context.IN_ITEM;
+        };
+    }
+    
+    @Override
+    public String toString() {
+        return "TokenTape (size: " + size + ", position: " + position + ", values: " + valueCount + ", numbers: " + numberCount + ")";
+    }
+}
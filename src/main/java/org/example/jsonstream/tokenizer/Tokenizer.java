@@ -1,9 +1,11 @@
 package org.example.jsonstream.tokenizer;
 
-import java.util.Stack;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EmptyStackException;
 import java.util.stream.Stream;
 
-public class Tokenizer implements TokenProducer {
+public class Tokenizer implements TokenProducer, TokenCursor {
 
     public enum Context {
         IN_ROOT,
@@ -15,6 +17,7 @@ public class Tokenizer implements TokenProducer {
     private enum State {
         ROOT,
         END,
+        END_DOCUMENT,
         
         OBJECT,
         PROPERTY,
@@ -24,6 +27,7 @@ public class Tokenizer implements TokenProducer {
         ITEM,
         END_ITEM,
         
+        VALUE,
         KEY_LITERAL,
         STRING_LITERAL,
         NUMERIC_LITERAL,
@@ -31,23 +35,157 @@ public class Tokenizer implements TokenProducer {
         TRUE_LITERAL,
         NULL_LITERAL,
         
-        ERROR
+        SKIP_PROPERTY,
+        SKIP_VALUE,
+        SKIP_CONTAINER,
+        
+        ERROR,
+        RECOVER
     }
     
-    private final Scanner scanner;
-    private final Stack<State> stack = new Stack<>();
-    private final Stack<Context> context = new Stack<>();
+    // one level of the context, each token points to the one it
+    // was produced in, they never change so tokens can share them
+    public static final class Frame {
+        private final Context context;
+        private final Frame parent;
+        private final int depth;
+        
+        Frame(Context context, Frame parent) {
+            this.context = context;
+            this.parent = parent;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+        }
+        
+        public Context getContext() { return context; }
+        public Frame getParent() { return parent; }
+        public int getDepth() { return depth; }
+        
+        Frame push(Context c) { return new Frame(c, this); }
+        
+        // the whole context, from the root down to this one
+        public Context[] toArray() {
+            Context[] contexts = new Context[depth];
+            for (Frame f = this; f != null; f = f.parent) contexts[f.depth - 1] = f.context;
+            return contexts;
+        }
+    }
+    
+    // java.util.Stack synchronizes everything, and we don't need it to
+    private static final class StateStack {
+        private State[] states = new State[16];
+        private int size;
+        
+        void push(State s) {
+            if (size == states.length) states = Arrays.copyOf(states, size * 2);
+            states[size++] = s;
+        }
+        State pop() {
+            if (size == 0) throw new EmptyStackException();
+            return states[--size];
+        }
+        State peek() {
+            if (size == 0) throw new EmptyStackException();
+            return states[size - 1];
+        }
+        void setSize(int n) { size = n; }
+    }
+    
+    private AbstractScanner scanner;
+    private final StateStack stack = new StateStack();
+    private final Frame rootContext = new Frame(Context.IN_ROOT, null);
+    private Frame context = rootContext;
     
     private State nextState;
     
-    public Tokenizer(Scanner s) {
+    // where to carry on from once a value has been skipped
+    private State afterSkip;
+    
+    // the current token, which is only ever the type and the
+    // value of any numbers, anything else is still in the scanner
+    private Tokens.Type type;
+    private long longValue;
+    private double doubleValue;
+    private String errorMessage;
+    
+    // where the current root value started, and where the
+    // last error was, as offsets into the input
+    private long recordStart;
+    private long errorEnd;
+    
+    // decimals (and integers too big for a long) are
+    // produced as BigDecimals rather than doubles
+    private boolean bigNumbers;
+    
+    // more than one root value in the input (as in NDJSON), each
+    // of them followed by an EndDocument token
+    private boolean multipleDocuments;
+    
+    // carry on after an error, with the next record
+    private boolean recovery;
+    
+    // where the keys come from, if they are to be shared
+    private KeyCache keys;
+    
+    public Tokenizer(AbstractScanner s) {
         nextState = State.ROOT;
         stack.push(nextState);
-        context.push(Context.IN_ROOT);
         scanner = s;
     }
     
-    public Scanner getScanner() { return scanner; }
+    public AbstractScanner getScanner() { return scanner; }
+    
+    // back to the start, to tokenize whatever the scanner was restarted on,
+    // keeping the stack we already have and all of the options
+    public Tokenizer reset() {
+        stack.setSize(0);
+        nextState = State.ROOT;
+        stack.push(nextState);
+        context      = rootContext;
+        afterSkip    = null;
+        type         = null;
+        longValue    = 0;
+        doubleValue  = 0;
+        errorMessage = null;
+        recordStart  = 0;
+        errorEnd     = 0;
+        return this;
+    }
+    
+    // the same, with another scanner
+    public Tokenizer reset(AbstractScanner s) {
+        scanner = s;
+        return reset();
+    }
+    
+    public Tokenizer withBigNumbers() {
+        bigNumbers = true;
+        return this;
+    }
+    
+    public Tokenizer withMultipleDocuments() {
+        multipleDocuments = true;
+        return this;
+    }
+    
+    // after an ErrorToken, skip the rest of the bad record and carry
+    // on with the next one, which is the next line starting with a
+    // { or [ (see AbstractScanner.resync), rather than stopping there,
+    // the ErrorToken has the offsets of the bad part of the input
+    public Tokenizer withRecovery() {
+        recovery = true;
+        return this;
+    }
+    
+    // each key is looked up in the cache, so the same key is the same
+    // String every time, across every document which uses the cache
+    public Tokenizer withKeyCache(KeyCache cache) {
+        keys = cache;
+        return this;
+    }
+    
+    public Tokenizer withKeyCache() {
+        return withKeyCache(KeyCache.shared());
+    }
 
     public boolean isInErrorState () { return nextState == State.ERROR; }
     public boolean isInEndState () { return nextState == State.END; }
@@ -68,14 +206,24 @@ public class Tokenizer implements TokenProducer {
         );
     }
 
-    public Tokens.Token produceToken() {
-        
+    // the tokens of the next document, up to but not including
+    // its EndDocument, or nothing once there are no more of them
+    public Stream<Tokens.Token> documentStream() {
+        return Stream.iterate(
+            produceToken(),
+            (t) -> !t.isTerminal() && t.getType() != Tokens.Type.END_DOCUMENT,
+            (t) -> produceToken()
+        );
+    }
+    
+    public Tokens.Type next() {
         State currState = nextState;
         nextState = null;
         
-        Tokens.Token token = switch (currState) {
+        type = switch (currState) {
             case ROOT -> root();
             case END  -> end();
+            case END_DOCUMENT -> endDocument();
             // Objects
             case OBJECT       -> object();
             case PROPERTY     -> property();
@@ -85,89 +233,314 @@ public class Tokenizer implements TokenProducer {
             case ITEM     -> item();
             case END_ITEM -> endItem();
             // Literals
+            case VALUE           -> value();
             case KEY_LITERAL     -> keyLiteral();
             case STRING_LITERAL  -> stringLiteral();
             case NUMERIC_LITERAL -> numericLiteral();
             case FALSE_LITERAL   -> falseLiteral();
             case TRUE_LITERAL    -> trueLiteral();
             case NULL_LITERAL    -> nullLiteral();
+            // Skipping
+            case SKIP_PROPERTY  -> skipProperty();
+            case SKIP_VALUE     -> skipped();
+            case SKIP_CONTAINER -> skippedRest();
             // Errors
             case ERROR ->
                 // TODO - this should do something better than this
                 error("Unknown Error");
+            case RECOVER -> recover();
+        };
+        return type;
+    }
+    
+    public Tokens.Token produceToken() {
+        next();
+        return currentToken();
+    }
+    
+    // push every token to the handler, straight from the state
+    // machine and the scanner, up to the first terminal token
+    // which is returned, so it can be driven again once there
+    // is more input, or after an EndDocument
+    public Tokens.Type drive(TokenHandler handler) {
+        while (true) {
+            switch (next()) {
+                case START_OBJECT   -> handler.startObject();
+                case END_OBJECT     -> handler.endObject();
+                case START_PROPERTY -> handler.startProperty();
+                case END_PROPERTY   -> handler.endProperty();
+                case ADD_KEY        -> handler.addKey(key());
+                case START_ARRAY    -> handler.startArray();
+                case END_ARRAY      -> handler.endArray();
+                case START_ITEM     -> handler.startItem();
+                case END_ITEM       -> handler.endItem();
+                case ADD_STRING     -> handler.addString(scanner.getScanContent());
+                case ADD_INT        -> handler.addInt((int) longValue);
+                case ADD_LONG       -> handler.addLong(longValue);
+                case ADD_FLOAT,
+                     ADD_DOUBLE     -> handler.addDouble(doubleValue);
+                case ADD_BIG_NUMBER -> handler.addBigNumber(scanner.getScanBigDecimal());
+                case ADD_TRUE       -> handler.addTrue();
+                case ADD_FALSE      -> handler.addFalse();
+                case ADD_NULL       -> handler.addNull();
+                case END_DOCUMENT   -> handler.endDocument();
+                case ERROR_TOKEN    -> {
+                    handler.error(errorMessage, recordStart, errorEnd);
+                    return type;
+                }
+                case NO_TOKEN,
+                     NEED_MORE_INPUT -> {
+                    return type;
+                }
+            }
+        }
+    }
+    
+    // the same for a consumer, including the terminal token, and each
+    // token goes right to its own consumeToken, rather than through
+    // the switch in the default one
+    public Tokens.Type drive(TokenConsumer consumer) {
+        while (true) {
+            switch (next()) {
+                case START_OBJECT   -> consumer.consumeToken(inContext(new Tokens.StartObject()));
+                case END_OBJECT     -> consumer.consumeToken(inContext(new Tokens.EndObject()));
+                case START_PROPERTY -> consumer.consumeToken(inContext(new Tokens.StartProperty()));
+                case END_PROPERTY   -> consumer.consumeToken(inContext(new Tokens.EndProperty()));
+                case ADD_KEY        -> consumer.consumeToken(inContext(new Tokens.AddKey(key())));
+                case START_ARRAY    -> consumer.consumeToken(inContext(new Tokens.StartArray()));
+                case END_ARRAY      -> consumer.consumeToken(inContext(new Tokens.EndArray()));
+                case START_ITEM     -> consumer.consumeToken(inContext(new Tokens.StartItem()));
+                case END_ITEM       -> consumer.consumeToken(inContext(new Tokens.EndItem()));
+                case ADD_STRING     -> consumer.consumeToken(inContext(new Tokens.AddString(scanner.getScanContent())));
+                case ADD_INT        -> consumer.consumeToken(inContext(new Tokens.AddInt((int) longValue)));
+                case ADD_FLOAT      -> consumer.consumeToken(inContext(new Tokens.AddFloat((float) doubleValue)));
+                case ADD_LONG       -> consumer.consumeToken(inContext(new Tokens.AddLong(longValue)));
+                case ADD_DOUBLE     -> consumer.consumeToken(inContext(new Tokens.AddDouble(doubleValue)));
+                case ADD_BIG_NUMBER -> consumer.consumeToken(inContext(new Tokens.AddBigNumber(scanner.getScanBigDecimal())));
+                case ADD_TRUE       -> consumer.consumeToken(inContext(new Tokens.AddTrue()));
+                case ADD_FALSE      -> consumer.consumeToken(inContext(new Tokens.AddFalse()));
+                case ADD_NULL       -> consumer.consumeToken(inContext(new Tokens.AddNull()));
+                case END_DOCUMENT   -> consumer.consumeToken(inContext(new Tokens.EndDocument()));
+                case ERROR_TOKEN    -> {
+                    consumer.consumeToken(inContext(new Tokens.ErrorToken(errorMessage, recordStart, errorEnd)));
+                    return type;
+                }
+                case NEED_MORE_INPUT -> {
+                    consumer.consumeToken(inContext(new Tokens.NeedMoreInput()));
+                    return type;
+                }
+                case NO_TOKEN -> {
+                    consumer.consumeToken(inContext(new Tokens.NoToken()));
+                    return type;
+                }
+            }
+        }
+    }
+    
+    private <T extends Tokens.Token> T inContext(T token) {
+        token.setContext(context);
+        return token;
+    }
+    
+    // straight from the cursor, without making the tokens
+    public int produceTokens(TokenBatch batch) {
+        batch.clear();
+        while (!batch.isFull()) {
+            next();
+            if (batch.add(this, context).isTerminal()) break;
+        }
+        return batch.size();
+    }
+    
+    // the scanner skips the value for us, so there are no tokens
+    // made for any of it, and it is only done on the next call
+    // to next() so it can wait for more input like anything else
+    public void skipValue() {
+        switch (type) {
+            case ADD_KEY -> nextState = State.SKIP_PROPERTY;
+            case START_ITEM -> {
+                afterSkip = State.END_ITEM;
+                nextState = State.SKIP_VALUE;
+            }
+            case START_OBJECT, START_ARRAY -> nextState = State.SKIP_CONTAINER;
+            default -> {}
+        }
+    }
+    
+    // cursor
+    
+    public Tokens.Type currentType() { return type; }
+    
+    public Tokens.Token currentToken() {
+        Tokens.Token token = switch (type) {
+            case NO_TOKEN        -> new Tokens.NoToken();
+            case ERROR_TOKEN     -> new Tokens.ErrorToken(errorMessage, recordStart, errorEnd);
+            case NEED_MORE_INPUT -> new Tokens.NeedMoreInput();
+            case END_DOCUMENT    -> new Tokens.EndDocument();
+            case START_OBJECT    -> new Tokens.StartObject();
+            case END_OBJECT      -> new Tokens.EndObject();
+            case START_PROPERTY  -> new Tokens.StartProperty();
+            case END_PROPERTY    -> new Tokens.EndProperty();
+            case ADD_KEY         -> keys != null ? new Tokens.AddKey(key()) : new Tokens.AddKey(scanner.getDeferredScanContent());
+            case START_ARRAY     -> new Tokens.StartArray();
+            case END_ARRAY       -> new Tokens.EndArray();
+            case START_ITEM      -> new Tokens.StartItem();
+            case END_ITEM        -> new Tokens.EndItem();
+            case ADD_TRUE        -> new Tokens.AddTrue();
+            case ADD_FALSE       -> new Tokens.AddFalse();
+            case ADD_NULL        -> new Tokens.AddNull();
+            case ADD_STRING      -> new Tokens.AddString(scanner.getDeferredScanContent());
+            case ADD_INT         -> new Tokens.AddInt((int) longValue);
+            case ADD_FLOAT       -> new Tokens.AddFloat((float) doubleValue);
+            case ADD_LONG        -> new Tokens.AddLong(longValue);
+            case ADD_DOUBLE      -> new Tokens.AddDouble(doubleValue);
+            case ADD_BIG_NUMBER  -> new Tokens.AddBigNumber(scanner.getScanBigDecimal());
         };
         
         // TODO - set this via the constructor, not like this
-        token.setContext(captureContext());
+        token.setContext(context);
 
         return token;
     }
-    
-    private Context[] captureContext() { return context.toArray(new Context[]{}); }
 
-    public Tokens.Token root() {
-       Scans.Scan scan = scanner.peekNextScan();
+    public int depth() { return context.getDepth(); }
+    
+    public Context currentContext() { return context.getContext(); }
+    
+    public String currentKey() {
+        return type == Tokens.Type.ADD_KEY ? key() : null;
+    }
+    
+    public String stringValue() {
+        if (type == Tokens.Type.ADD_KEY) return key();
+        if (type != Tokens.Type.ADD_STRING) throw notA("string");
+        return scanner.getScanContent();
+    }
+    
+    private String key() {
+        return keys != null ? scanner.getScanContent(keys) : scanner.getScanContent();
+    }
+    
+    public int intValue() {
+        if (type != Tokens.Type.ADD_INT) throw notA("int");
+        return (int) longValue;
+    }
+    
+    public long longValue() {
+        if (type != Tokens.Type.ADD_INT && type != Tokens.Type.ADD_LONG) throw notA("long");
+        return longValue;
+    }
+    
+    public double doubleValue() {
+        return switch (type) {
+            case ADD_INT, ADD_LONG -> longValue;
+            case ADD_DOUBLE,
+                 ADD_FLOAT         -> doubleValue;
+            case ADD_BIG_NUMBER    -> scanner.getScanDouble();
+            default                -> throw notA("double");
+        };
+    }
+    
+    public BigDecimal bigNumberValue() {
+        return switch (type) {
+            case ADD_INT, ADD_LONG, ADD_DOUBLE, ADD_BIG_NUMBER -> scanner.getScanBigDecimal();
+            default -> throw notA("number");
+        };
+    }
+    
+    public String errorMessage() {
+        return type == Tokens.Type.ERROR_TOKEN ? errorMessage : null;
+    }
+    
+    private IllegalStateException notA(String what) {
+        return new IllegalStateException("The current token is " + type + ", not a " + what);
+    }
+    
+    // states
+    
+    
+    
+    private Tokens.Type root() {
+       Scans.ScanType scan = scanner.peekScan();
+       
+       if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.ROOT);
+       if (scan == Scans.ScanType.END) return end();
        
-       if (scan.isEnd()) return end();
-       if (scan.isError()) return error("Got error from scanner: "+ scan.getValue());
+       recordStart = scanner.getScanStart();
+       if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
        
-       return switch (scan.getValue()) {
-           case "{" -> object();
-           case "[" -> array();
+       return switch (scanner.getScanChar()) {
+           case '{' -> object();
+           case '[' -> array();
            default  -> error("The root node must be either an Object({}) or an Array([])");
        };
     }
 
-    public Tokens.Token start() {
-        Scans.Scan scan = scanner.peekNextScan();
+    private Tokens.Type start() {
+        Scans.ScanType scan = scanner.peekScan();
         
-        if (scan.isEnd()) return error("Expected a value, got End");
-        if (scan.isError()) return error("Got error from scanner: "+ scan.getValue());
-        
-        String value = scan.getValue();
-        return switch (value) {
-            case "{"     -> object();
-            case "["     -> array();
-            case "true"  -> trueLiteral();
-            case "false" -> falseLiteral();
-            case "null"  -> nullLiteral();
-            default      -> {
-                if (scan.isConstant()) {
-                    if (scan.isString()) yield stringLiteral();
-                    else if (scan.isNumber()) yield numericLiteral();
-                    else yield error("Expected constant, got "+ scan);
-                } else {
-                    yield error("Unrecognized start character (" + value + ")");
-                }
-            }
+        return switch (scan) {
+            case NEED_MORE_INPUT -> needMoreInput(State.VALUE);
+            case END      -> error("Expected a value, got End");
+            case ERROR    -> error("Got error from scanner: "+ scanner.getScanValue());
+            case STRING   -> stringLiteral();
+            case INTEGER,
+                 FLOAT    -> numericLiteral();
+            case KEYWORD  -> switch (scanner.getScanChar()) {
+                case 't' -> trueLiteral();
+                case 'f' -> falseLiteral();
+                default  -> nullLiteral();
+            };
+            case OPERATOR -> switch (scanner.getScanChar()) {
+                case '{' -> object();
+                case '[' -> array();
+                default  -> error("Unrecognized start character (" + (char) scanner.getScanChar() + ")");
+            };
         };
     }
 
-    public Tokens.Token end() {
+    // start() again, after running out of input
+    private Tokens.Type value() {
+        Tokens.Type value = start();
+        if (nextState == null) nextState = stack.peek() == State.PROPERTY ? State.END_PROPERTY : State.END_ITEM;
+        return value;
+    }
+    
+    private Tokens.Type endDocument() {
+        // we are already back down to the root by now, this just
+        // makes sure of it, and the stacks keep their capacity
+        stack.setSize(1);
+        context = rootContext;
+        nextState = State.ROOT;
+        return Tokens.Type.END_DOCUMENT;
+    }
+    
+    private Tokens.Type end() {
         // TODO - this should make sure there is not en error
         //       meaning that the `state` stack is empty
         //       and the buffer is done.
         nextState = State.END;
-        return new Tokens.NoToken();
+        return Tokens.Type.NO_TOKEN;
     }
 
-    public Tokens.Token object() {
-        Scans.Scan scan = scanner.peekNextScan();
+    private Tokens.Type object() {
+        Scans.ScanType scan = scanner.peekScan();
         
-        if (scan.isEnd()) return error("object() expected more scanner tokens");
-        if (scan.isError()) return error("Got error from scanner: " + scan.getValue());
-        if (!scan.isOperator())
-            return error("Expected end of object or start of property, but found (" + scan + ")");
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.OBJECT);
+        if (scan == Scans.ScanType.END) return error("object() expected more scanner tokens");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: " + scanner.getScanValue());
+        if (scan != Scans.ScanType.OPERATOR)
+            return error("Expected end of object or start of property, but found (" + scanner.getScanValue() + ")");
         
-        return switch (scan.getValue()) {
-            case "{" -> {
+        return switch (scanner.getScanChar()) {
+            case '{' -> {
                 scanner.discardNextScan();
-                context.push(Context.IN_OBJECT);
+                context = context.push(Context.IN_OBJECT);
                 stack.push(State.OBJECT);
                 nextState = State.PROPERTY;
-                yield new Tokens.StartObject();
+                yield Tokens.Type.START_OBJECT;
             }
-            case "," -> {
+            case ',' -> {
                 if (stack.peek() == State.PROPERTY) {
                     yield endProperty();
                 }
@@ -175,39 +548,41 @@ public class Tokenizer implements TokenProducer {
                 scanner.discardNextScan();
                 yield property();
             }
-            case "}" -> {
+            case '}' -> {
                 // TODO - check if the state is not empty
                 if (stack.peek() == State.PROPERTY) {
                     yield endProperty();
                 }
                 scanner.discardNextScan();
                 // TODO - check if the context is not empty and peek() == IN_OBJECT
-                context.pop();
+                context = context.getParent();
                 // TODO - check if the stack is not empty and peek() == OBJECT
                 stack.pop();
-                nextState = stack.peek(); // restore the previous one
-                yield new Tokens.EndObject();
+                nextState = restoreState();
+                yield Tokens.Type.END_OBJECT;
             }
-            default -> error("Expected end of object or start of property operator, but found (" + scan.getValue() + ")");
+            default -> error("Expected end of object or start of property operator, but found (" + scanner.getScanValue() + ")");
         };
     }
 
-    public Tokens.Token property() {
-        Scans.Scan scan = scanner.peekNextScan();
+    private Tokens.Type property() {
+        Scans.ScanType scan = scanner.peekScan();
         
-        if (scan.isEnd()) {
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) {
+            return needMoreInput(State.PROPERTY);
+        } else if (scan == Scans.ScanType.END) {
             return error("property() expected more scanner tokens");
-        } else if (scan.isError()) {
-            return error("Got error from scanner: "+ scan.getValue());
-        } else if (scan.isString()) {
-            context.push(Context.IN_PROPERTY);
+        } else if (scan == Scans.ScanType.ERROR) {
+            return error("Got error from scanner: "+ scanner.getScanValue());
+        } else if (scan == Scans.ScanType.STRING) {
+            context = context.push(Context.IN_PROPERTY);
             stack.push(State.PROPERTY);
             nextState = State.KEY_LITERAL;
-            return new Tokens.StartProperty();
-        } else if (scan.isOperator() && scan.getValue().equals(":")) {
+            return Tokens.Type.START_PROPERTY;
+        } else if (scan == Scans.ScanType.OPERATOR && scanner.getScanChar() == ':') {
             // TODO - check to be sure we are still in property state here
             scanner.discardNextScan();   // skip over the :
-            Tokens.Token value = start(); // and grab whatever value we find
+            Tokens.Type value = start(); // and grab whatever value we find
             // TODO - check if the Token is an ErrorToken, in which case just return it
             //       although perhaps we want to set an ERROR state too?? hmmm
             // TODO - check to be sure we are back in the same property state again
@@ -219,68 +594,71 @@ public class Tokenizer implements TokenProducer {
         }
     }
 
-    public Tokens.Token endProperty() {
+    private Tokens.Type endProperty() {
         // TODO - check if the context is not empty and peek() == IN_PROPERTY
-        context.pop();
+        context = context.getParent();
         // TODO - check if the stack is not empty and peek() == PROPERTY
         stack.pop(); // exit the property context
         nextState = State.OBJECT;
-        return new Tokens.EndProperty();
+        return Tokens.Type.END_PROPERTY;
     }
 
-    public Tokens.Token array() {
-        Scans.Scan scan = scanner.peekNextScan();
+    private Tokens.Type array() {
+        Scans.ScanType scan = scanner.peekScan();
         
-        if (scan.isEnd()) return error("array() expected more scanner tokens");;
-        if (scan.isError()) return error("Got error from scanner: "+ scan.getValue());
-        if (!scan.isOperator())
-            return error("Expected end of array or start of an item, but found (" + scan + ")");
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.ARRAY);
+        if (scan == Scans.ScanType.END) return error("array() expected more scanner tokens");;
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
+        if (scan != Scans.ScanType.OPERATOR)
+            return error("Expected end of array or start of an item, but found (" + scanner.getScanValue() + ")");
         
-        return switch (scan.getValue()) {
-            case "[" -> {
+        return switch (scanner.getScanChar()) {
+            case '[' -> {
                 scanner.discardNextScan();
-                context.push(Context.IN_ARRAY);
+                context = context.push(Context.IN_ARRAY);
                 stack.push(State.ARRAY);
                 nextState = State.ITEM;
-                yield new Tokens.StartArray();
+                yield Tokens.Type.START_ARRAY;
             }
-            case "," -> {
+            case ',' -> {
                 if (stack.peek() == State.ITEM) {
                     yield endItem();
                 }
                 scanner.discardNextScan();
                 yield item();
             }
-            case "]" -> {
+            case ']' -> {
                 // TODO - check if the state is not empty
                 if (stack.peek() == State.ITEM) {
                     yield endItem();
                 }
                 scanner.discardNextScan();
                 // TODO - check if the context is not empty and peek() == IN_ARRAY
-                context.pop();
+                context = context.getParent();
                 // TODO - check if the stack is not empty and peek() == ARRAY
                 stack.pop();
-                nextState = stack.peek(); // restore the previous one
-                yield new Tokens.EndArray();
+                nextState = restoreState();
+                yield Tokens.Type.END_ARRAY;
             }
-            default -> error("Expected array or item, but found (" + scan.getValue() + ")");
+            default -> error("Expected array or item, but found (" + scanner.getScanValue() + ")");
         };
     }
 
-    public Tokens.Token item() {
-        Scans.Scan scan = scanner.peekNextScan();
+    private Tokens.Type item() {
+        Scans.ScanType scan = scanner.peekScan();
         
-        if (scan.isEnd()) {
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) {
+            return needMoreInput(State.ITEM);
+        } else if (scan == Scans.ScanType.END) {
             return error("array() expected more scanner tokens");
-        } else if (scan.isError()) {
-            return error("Got error from scanner: "+ scan.getValue());
-        } else if (scan.isOperator() && scan.getValue().equals("]")) {
+        } else if (scan == Scans.ScanType.ERROR) {
+            return error("Got error from scanner: "+ scanner.getScanValue());
+        } else if (scan == Scans.ScanType.OPERATOR && scanner.getScanChar() == ']') {
             return array();
         } else {
             // if we are in item context
             if (stack.peek() == State.END_ITEM) {
-                Tokens.Token value = start(); // grab whatever value we find
+                Tokens.Type value = start(); // grab whatever value we find
                 // TODO - check if the Token is an ErrorToken, in which case just return it
                 //       although perhaps we want to set an ERROR state too?? hmmm
                 // TODO - check to be sure we are back in the same item state again
@@ -290,82 +668,153 @@ public class Tokenizer implements TokenProducer {
             
             // Handle starting the item
             // otherwise, start the item and "recurse"
-            context.push(Context.IN_ITEM);
+            context = context.push(Context.IN_ITEM);
             stack.push(State.END_ITEM);
             nextState = State.ITEM;
-            return new Tokens.StartItem();
+            return Tokens.Type.START_ITEM;
         }
     }
 
-    public Tokens.Token endItem() {
+    private Tokens.Type endItem() {
         // TODO - check if the state is not empty and peek() == ITEM
         // TODO - check if the context is not empty and peek() == IN_ARRAY
-        context.pop();
+        context = context.getParent();
         // TODO - check if the stack is not empty and peek() == ITEM
         stack.pop(); // exit the property context
         nextState = State.ARRAY;
-        return new Tokens.EndItem();
+        return Tokens.Type.END_ITEM;
     }
     
-    public Tokens.Token keyLiteral() {
-        Scans.Scan scan = scanner.getNextScan();
-        if (scan.isEnd()) return error("Unexpected end of input, expected keyLiteral");
-        if (scan.isError()) return error("Got error from scanner: "+ scan.getValue());
+    private Tokens.Type keyLiteral() {
+        Scans.ScanType scan = scanner.scan();
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.KEY_LITERAL);
+        if (scan == Scans.ScanType.END) return error("Unexpected end of input, expected keyLiteral");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
         nextState = State.PROPERTY; // return to caller state
-        String key = scan.getValue();
-        return new Tokens.AddKey(key.substring(1,key.lastIndexOf("\"")));
+        return Tokens.Type.ADD_KEY;
     }
     
-    public Tokens.Token stringLiteral() {
-        Scans.Scan scan = scanner.getNextScan();
-        if (scan.isEnd()) return error("Unexpected end of input, expected stringLiteral");
-        if (scan.isError()) return error("Got error from scanner: "+ scan.getValue());
+    private Tokens.Type stringLiteral() {
+        Scans.ScanType scan = scanner.scan();
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.STRING_LITERAL);
+        if (scan == Scans.ScanType.END) return error("Unexpected end of input, expected stringLiteral");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
         nextState = stack.peek(); // return to caller state
-        String str = scan.getValue();
-        return new Tokens.AddString(str.substring(1,str.lastIndexOf("\"")));
+        return Tokens.Type.ADD_STRING;
     }
 
-    public Tokens.Token numericLiteral() {
-        Scans.Scan scan = scanner.getNextScan();
+    private Tokens.Type numericLiteral() {
+        Scans.ScanType scan = scanner.scan();
         
-        if (scan.isEnd()) return error("Unexpected end of input, expected numericLiteral");
-        if (scan.isError()) return error("Got error from scanner: "+ scan.getValue());
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.NUMERIC_LITERAL);
+        if (scan == Scans.ScanType.END) return error("Unexpected end of input, expected numericLiteral");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
         
         nextState = stack.peek(); // return to caller state
-        if (scan.isInteger()) {
-            return new Tokens.AddInt(Integer.parseInt(scan.getValue()));
-        } else if (scan.isFloat()) {
-            return new Tokens.AddFloat(Float.parseFloat(scan.getValue()));
+        if (scan == Scans.ScanType.INTEGER && scanner.isScanLong()) {
+            longValue = scanner.getScanLong();
+            return longValue == (int) longValue ? Tokens.Type.ADD_INT : Tokens.Type.ADD_LONG;
+        } else if (scan == Scans.ScanType.INTEGER || scan == Scans.ScanType.FLOAT) {
+            // the scanner can still give us the exact value if asked
+            if (bigNumbers) return Tokens.Type.ADD_BIG_NUMBER;
+            doubleValue = scanner.getScanDouble();
+            return Tokens.Type.ADD_DOUBLE;
         } else {
-            return error("Expected Int or Float Scanner token, not "+ scan);
+            return error("Expected Int or Float Scanner token, not "+ scanner.getScanValue());
         }
     }
 
-    public Tokens.Token falseLiteral() {
+    private Tokens.Type falseLiteral() {
         scanner.discardNextScan();
         // TODO - check for errors and the correct token here
-        return new Tokens.AddFalse();
+        return Tokens.Type.ADD_FALSE;
     }
 
-    public Tokens.Token trueLiteral() {
+    private Tokens.Type trueLiteral() {
         scanner.discardNextScan();
         // TODO - check for errors and the correct token here
-        return new Tokens.AddTrue();
+        return Tokens.Type.ADD_TRUE;
     }
 
-    public Tokens.Token nullLiteral() {
+    private Tokens.Type nullLiteral() {
         scanner.discardNextScan();
         // TODO - check for errors and the correct token here
-        return new Tokens.AddNull();
+        return Tokens.Type.ADD_NULL;
     }
 
-    public Tokens.Token error(String msg) {
+    private Tokens.Type skipProperty() {
+        Scans.ScanType scan = scanner.peekScan();
+        
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.SKIP_PROPERTY);
+        if (scan == Scans.ScanType.END) return error("Unexpected end of input, expected : after the key");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
+        if (scan != Scans.ScanType.OPERATOR || scanner.getScanChar() != ':')
+            return error("Expected : after the key, but found (" + scanner.getScanValue() + ")");
+        
+        scanner.discardNextScan();
+        afterSkip = State.END_PROPERTY;
+        return skipped();
+    }
+    
+    private Tokens.Type skipped() {
+        Scans.ScanType scan = scanner.skipValue();
+        
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.SKIP_VALUE);
+        if (scan == Scans.ScanType.END) return error("Expected a value, got End");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
+        
+        // and on to whatever comes after it
+        nextState = afterSkip;
+        return next();
+    }
+    
+    private Tokens.Type skippedRest() {
+        Scans.ScanType scan = scanner.skipRest();
+        
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.SKIP_CONTAINER);
+        if (scan == Scans.ScanType.END) return error("Unexpected end of input, expected the end of the container");
+        if (scan == Scans.ScanType.ERROR) return error("Got error from scanner: "+ scanner.getScanValue());
+        
+        // the closing bracket is next, which ends it as usual
+        nextState = stack.peek();
+        return next();
+    }
+    
+    // back to the state we were in before the value which just
+    // ended, which is the end of the document if it was the root
+    private State restoreState() {
+        State previous = stack.peek();
+        return previous == State.ROOT && multipleDocuments ? State.END_DOCUMENT : previous;
+    }
+    
+    // the scanner ran out of input part way through a scan, none
+    // of it has been consumed, so once there is more we go back
+    // to the state which asked for it and carry on from there
+    private Tokens.Type needMoreInput(State resume) {
+        nextState = resume;
+        return Tokens.Type.NEED_MORE_INPUT;
+    }
+    
+    private Tokens.Type error(String msg) {
         // only the enter state once ...
         if ( nextState != State.ERROR ) {
-            nextState = State.ERROR;
-            context.push(Context.IN_ERROR);
+            nextState = recovery ? State.RECOVER : State.ERROR;
+            context = context.push(Context.IN_ERROR);
         }
-        return new Tokens.ErrorToken(msg);
+        errorMessage = msg;
+        errorEnd = scanner.getScanEnd();
+        return Tokens.Type.ERROR_TOKEN;
+    }
+    
+    // skip whatever is left of the bad record, and start again
+    // from the root with the next one
+    private Tokens.Type recover() {
+        Scans.ScanType scan = scanner.resync();
+        if (scan == Scans.ScanType.NEED_MORE_INPUT) return needMoreInput(State.RECOVER);
+        
+        stack.setSize(1);
+        context = rootContext;
+        return scan == Scans.ScanType.END ? end() : root();
     }
     
 }
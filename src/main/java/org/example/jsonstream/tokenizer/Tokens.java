@@ -4,12 +4,16 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.math.BigDecimal;
+import java.util.function.Supplier;
 
 public class Tokens {
     
     public enum Type {
         NO_TOKEN,
         ERROR_TOKEN,
+        NEED_MORE_INPUT,
+        END_DOCUMENT,
         
         START_OBJECT, END_OBJECT,
         START_PROPERTY, END_PROPERTY, ADD_KEY,
@@ -19,7 +23,13 @@ public class Tokens {
         
         ADD_TRUE, ADD_FALSE, ADD_NULL,
         
-        ADD_STRING, ADD_INT, ADD_FLOAT
+        ADD_STRING, ADD_INT, ADD_FLOAT,
+        ADD_LONG, ADD_DOUBLE, ADD_BIG_NUMBER;
+        
+        // the ones which are marked isTerminal below
+        public boolean isTerminal() {
+            return this == NO_TOKEN || this == ERROR_TOKEN || this == NEED_MORE_INPUT;
+        }
     }
 
     @Target(ElementType.TYPE)
@@ -36,38 +46,51 @@ public class Tokens {
         
         Tokenizer.Context[] getContext();
         void setContext(Tokenizer.Context[] ctx);
+        void setContext(Tokenizer.Frame frame);
 
         int getContextDepth();
         Tokenizer.Context getCurrentContext();
     }
     
     private static abstract class BasicToken implements Token {
+        // the Tokenizer gives us the frame, and we only
+        // turn it into the full context if we are asked
+        private Tokenizer.Frame frame;
         private Tokenizer.Context[] context;
 
-        private final String name = this.getClass().getSimpleName();
-        private final Type type = this.getClass().getAnnotation(TokenType.class).type();
-        private final Boolean isTerminal = this.getClass().getAnnotation(TokenType.class).isTerminal();
+        // looked up once per class, rather than once per token
+        private static final ClassValue<TokenType> TOKEN_TYPES = new ClassValue<>() {
+            protected TokenType computeValue(Class<?> c) { return c.getAnnotation(TokenType.class); }
+        };
         
-        public String getName() { return name; }
+        private final Type type = TOKEN_TYPES.get(getClass()).type();
+        
+        public String getName() { return getClass().getSimpleName(); }
         public Type getType() { return type; }
         
-        public boolean isTerminal() { return isTerminal; }
+        public boolean isTerminal() { return TOKEN_TYPES.get(getClass()).isTerminal(); }
         
         public Tokenizer.Context[] getContext() {
+            if (context == null && frame != null) context = frame.toArray();
             return context;
         }
         public void setContext(Tokenizer.Context[] ctx) {
             context = ctx;
+            frame = null;
+        }
+        public void setContext(Tokenizer.Frame f) {
+            frame = f;
+            context = null;
         }
         public int getContextDepth() {
-            return context.length;
+            return frame != null ? frame.getDepth() : context.length;
         }
         public Tokenizer.Context getCurrentContext() {
-            return context[context.length - 1];
+            return frame != null ? frame.getContext() : context[context.length - 1];
         }
         
         @Override
-        public String toString() { return name; }
+        public String toString() { return getName(); }
     }
     
     // Terminals
@@ -78,15 +101,35 @@ public class Tokens {
     @TokenType(type = Type.ERROR_TOKEN, isTerminal = true)
     public static class ErrorToken extends BasicToken {
         private final String msg;
+        // where the bad record started, and where it went wrong,
+        // as offsets into the input, or -1 if we don't know
+        private final long start;
+        private final long end;
         
-        public ErrorToken(String m) { msg = m; }
+        public ErrorToken(String m) { this(m, -1, -1); }
+        public ErrorToken(String m, long start, long end) {
+            msg = m;
+            this.start = start;
+            this.end = end;
+        }
         public String getMsg() { return msg; }
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
         
         @Override
         public String toString() { return getName() + "[" + msg + "]"; }
     }
     
+    // the input ran out part way through, the Tokenizer
+    // carries on from here once there is more of it
+    @TokenType(type = Type.NEED_MORE_INPUT, isTerminal = true)
+    public static class NeedMoreInput extends BasicToken {}
+    
     // Non-Terminals
+    
+    // the end of one root value, when there can be more than one
+    @TokenType(type = Type.END_DOCUMENT)
+    public static class EndDocument extends BasicToken {}
 
     @TokenType(type = Type.START_OBJECT)
     public static class StartObject extends BasicToken {}
@@ -123,24 +166,42 @@ public class Tokens {
     
     @TokenType(type = Type.ADD_KEY)
     public static class AddKey extends BasicToken {
-        private final String value;
+        private Supplier<String> source;
+        private String value;
 
         public AddKey(String s) { value = s; }
-        public String getValue() { return value; }
+        // decode the value only if it is asked for
+        public AddKey(Supplier<String> s) { source = s; }
+        public String getValue() {
+            if (value == null) {
+                value  = source.get();
+                source = null;
+            }
+            return value;
+        }
         
         @Override
-        public String toString() { return getName() + "[" + value + "]"; }
+        public String toString() { return getName() + "[" + getValue() + "]"; }
     }
     
     @TokenType(type = Type.ADD_STRING)
     public static class AddString extends BasicToken {
-        private final String value;
+        private Supplier<String> source;
+        private String value;
         
         public AddString(String s) { value = s; }
-        public String getValue() { return value; }
+        // decode the value only if it is asked for
+        public AddString(Supplier<String> s) { source = s; }
+        public String getValue() {
+            if (value == null) {
+                value  = source.get();
+                source = null;
+            }
+            return value;
+        }
         
         @Override
-        public String toString() { return getName() + "[" + value + "]"; }
+        public String toString() { return getName() + "[" + getValue() + "]"; }
     }
     
     @TokenType(type = Type.ADD_INT)
@@ -165,4 +226,39 @@ public class Tokens {
         public String toString() { return getName() + "[" + value + "]"; }
     }
     
+    @TokenType(type = Type.ADD_LONG)
+    public static class AddLong extends BasicToken {
+        private final long value;
+        
+        public AddLong(long l) { value = l; }
+        public long getValue() { return value; }
+        
+        @Override
+        public String toString() { return getName() + "[" + value + "]"; }
+    }
+    
+    @TokenType(type = Type.ADD_DOUBLE)
+    public static class AddDouble extends BasicToken {
+        private final double value;
+        
+        public AddDouble(double d) { value = d; }
+        public double getValue() { return value; }
+        
+        @Override
+        public String toString() { return getName() + "[" + value + "]"; }
+    }
+    
+    // only produced when the Tokenizer is asked for big numbers,
+    // integers have a scale of zero (see toBigIntegerExact)
+    @TokenType(type = Type.ADD_BIG_NUMBER)
+    public static class AddBigNumber extends BasicToken {
+        private final BigDecimal value;
+        
+        public AddBigNumber(BigDecimal n) { value = n; }
+        public BigDecimal getValue() { return value; }
+        
+        @Override
+        public String toString() { return getName() + "[" + value + "]"; }
+    }
+    
 }
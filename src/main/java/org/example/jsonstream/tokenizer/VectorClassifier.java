@@ -0,0 +1,45 @@
+package org.example.jsonstream.tokenizer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+// Classifies a block with the (incubating) Vector API, this class
+// is only ever loaded if the jdk.incubator.vector module is present
+class VectorClassifier implements StructuralIndex.Classifier {
+    
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    
+    VectorClassifier() {
+        if (SPECIES.length() < 8 || StructuralIndex.BLOCK_SIZE % SPECIES.length() != 0) {
+            throw new UnsupportedOperationException("Unsupported vector species: " + SPECIES);
+        }
+    }
+    
+    public void classify(byte[] block, long[] masks) {
+        long quote = 0, backslash = 0, operator = 0, whitespace = 0;
+        for (int i = 0; i < StructuralIndex.BLOCK_SIZE; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromArray(SPECIES, block, i);
+            quote      |= v.eq((byte) '"').toLong() << i;
+            backslash  |= v.eq((byte) '\\').toLong() << i;
+            
+            // '{' and '[' (or '}' and ']') only differ by 0x20
+            ByteVector bracket = v.or((byte) 0x20);
+            VectorMask<Byte> op = bracket.eq((byte) '{')
+                                      .or(bracket.eq((byte) '}'))
+                                      .or(v.eq((byte) ','))
+                                      .or(v.eq((byte) ':'));
+            operator   |= op.toLong() << i;
+            
+            VectorMask<Byte> ws = v.eq((byte) ' ')
+                                      .or(v.eq((byte) '\t'))
+                                      .or(v.eq((byte) '\n'))
+                                      .or(v.eq((byte) '\r'));
+            whitespace |= ws.toLong() << i;
+        }
+        masks[QUOTE]      = quote;
+        masks[BACKSLASH]  = backslash;
+        masks[OPERATOR]   = operator;
+        masks[WHITESPACE] = whitespace;
+    }
+}
@@ -2,6 +2,8 @@ package org.example.jsonstream.parser;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ASTTest {
@@ -35,4 +37,48 @@ class ASTTest {
         assertEquals("{\"foo\":true,\"bar\":[null,10,{}],\"baz\":[false,3.14,[],\"gorch\"]}", o.toJSON());
     }
     
+    @Test
+    void ASTTest_ObjectGet () {
+        // small ones, and ones big enough to be indexed, and growing after that
+        for (int size : new int[]{ 0, 1, 7, 8, 9, 100, 5000 }) {
+            AST.ObjectNode o = AST.newObject();
+            for (int i = 0; i < size; i++) {
+                o.addProperty(AST.newProperty().addKey("k" + i).addValue(AST.newInt(i)));
+            }
+            for (int i = 0; i < size; i++) {
+                assertEquals(i, ((AST.IntNode) o.get("k" + i)).getValue());
+            }
+            assertFalse(o.has("nope"));
+            assertNull(o.get("nope"));
+            
+            o.addProperty(AST.newProperty().addKey("later").addValue(AST.newTrue()));
+            assertTrue(o.has("later"));
+            if (size > 0) assertTrue(o.has("k" + (size - 1)));
+            
+            // still in the order they were added
+            assertEquals("later", o.properties().get(size).getKey());
+            if (size > 0) assertEquals("k0", o.properties().get(0).getKey());
+        }
+    }
+    
+    @Test
+    void ASTTest_ObjectGetDuplicates () {
+        AST.ObjectNode small = AST.newObject();
+        AST.ObjectNode big = AST.newObject();
+        for (int i = 0; i < 20; i++) {
+            big.addProperty(AST.newProperty().addKey("k" + i).addValue(AST.newInt(i)));
+        }
+        for (AST.ObjectNode o : List.of(small, big)) {
+            o.addProperty(AST.newProperty().addKey("dup").addValue(AST.newInt(1)));
+            assertEquals(1, ((AST.IntNode) o.get("dup")).getValue());
+            o.addProperty(AST.newProperty().addKey("dup").addValue(AST.newInt(2)));
+            
+            // the last one wins, like everywhere else, but both are kept
+            assertEquals(2, ((AST.IntNode) o.get("dup")).getValue());
+            assertEquals(2, o.properties().stream().filter((p) -> p.getKey().equals("dup")).count());
+            
+            assertThrows(UnsupportedOperationException.class, () -> o.properties().clear());
+        }
+    }
+    
 }
@@ -0,0 +1,122 @@
+package org.example.jsonstream.parser;
+
+import org.example.jsonstream.tokenizer.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+    
+    private static final String SOURCE = "{\"foo\":[1,-2,12345678901,-3.25,\"bar\",[]],\"baz\":{\"gorch\":[true,false,null],\"empty\":{}}}";
+    
+    private static AST.Node parse(String source) {
+        Parser parser = new Parser();
+        new Tokenizer(new Scanner(source)).stream().forEach(parser::consumeToken);
+        return parser.getRoot();
+    }
+    
+    @Test
+    void JsonWriterTest_Compact () throws IOException {
+        AST.Node root = parse(SOURCE);
+        assertEquals(SOURCE, root.toJSON());
+        
+        // a buffer so small it is flushed all the time, to each of the outputs
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new JsonWriter(bytes, 7).write(root).flush();
+        assertEquals(SOURCE, bytes.toString(StandardCharsets.UTF_8));
+        
+        bytes.reset();
+        try (JsonWriter writer = new JsonWriter(Channels.newChannel(bytes))) {
+            writer.write(root);
+        }
+        assertEquals(SOURCE, bytes.toString(StandardCharsets.UTF_8));
+        
+        StringBuilder sb = new StringBuilder();
+        new JsonWriter(sb).write(root).flush();
+        assertEquals(SOURCE, sb.toString());
+    }
+    
+    @Test
+    void JsonWriterTest_Pretty () throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).withPrettyPrinting().write(parse(SOURCE)).flush();
+        assertEquals(String.join("\n",
+            "{",
+            "  \"foo\": [",
+            "    1,",
+            "    -2,",
+            "    12345678901,",
+            "    -3.25,",
+            "    \"bar\",",
+            "    []",
+            "  ],",
+            "  \"baz\": {",
+            "    \"gorch\": [",
+            "      true,",
+            "      false,",
+            "      null",
+            "    ],",
+            "    \"empty\": {}",
+            "  }",
+            "}"), out.toString());
+    }
+    
+    @Test
+    void JsonWriterTest_Escapes () {
+        String value = "quote\" backslash\\ slash/ \b\f\n\r\t \u0001 café € \uD83D\uDE00 \uDC00";
+        AST.ObjectNode object = AST.newObject().addProperty(AST.newProperty().addKey("k\"ey").addValue(AST.newString(value)));
+        
+        String json = object.toJSON();
+        assertEquals("{\"k\\\"ey\":\"quote\\\" backslash\\\\ slash/ \\b\\f\\n\\r\\t \\u0001 café € \uD83D\uDE00 \\udc00\"}", json);
+        
+        // and it reads back as what it was
+        AST.ObjectNode back = (AST.ObjectNode) parse(json);
+        assertEquals(value, ((AST.StringNode) back.get("k\"ey")).getValue());
+        
+        // which is the same through a tiny buffer, with the chars split over it
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(bytes, 6);
+        assertDoesNotThrow(() -> writer.write(object).flush());
+        assertEquals(json, bytes.toString(StandardCharsets.UTF_8));
+        
+        assertEquals(String.valueOf(Long.MIN_VALUE), AST.newArray().addItem(AST.newItem(AST.newLong(Long.MIN_VALUE))).toJSON().replaceAll("[\\[\\]]", ""));
+        assertEquals("[0,-1,2147483647]", AST.newArray().addItem(AST.newItem(AST.newInt(0))).addItem(AST.newItem(AST.newInt(-1))).addItem(AST.newItem(AST.newInt(Integer.MAX_VALUE))).toJSON());
+    }
+    
+    @Test
+    void JsonWriterTest_Tokens () {
+        String source = "{\"a\": [1, 2.5, \"x\\ny\"], \"b\": {\"c\": null}}\n[true, false]\n";
+        String expected = "{\"a\":[1,2.5,\"x\\ny\"],\"b\":{\"c\":null}}\n[true,false]\n";
+        
+        // one token at a time, and it flushes at the NoToken
+        StringBuilder tokens = new StringBuilder();
+        JsonWriter writer = new JsonWriter(tokens);
+        new Tokenizer(new Scanner(source)).withMultipleDocuments().drive(writer);
+        assertEquals(expected, tokens.toString());
+        
+        // the values straight from the tokenizer
+        StringBuilder handled = new StringBuilder();
+        writer = new JsonWriter(handled);
+        new Tokenizer(new Scanner(source)).withMultipleDocuments().drive(writer.asHandler());
+        assertDoesNotThrow(writer::flush);
+        assertEquals(expected, handled.toString());
+        
+        // in batches, carrying on after a bad document
+        StringBuilder batched = new StringBuilder();
+        writer = new JsonWriter(batched);
+        Tokenizer tokenizer = new Tokenizer(new Scanner("[1]\n[1 2]\n[3]\n")).withMultipleDocuments().withRecovery();
+        TokenBatch batch = new TokenBatch(4);
+        do {
+            tokenizer.produceTokens(batch);
+            writer.consumeBatch(batch);
+        } while (batch.type(batch.size() - 1) != Tokens.Type.NO_TOKEN);
+        assertEquals("[1]\n[1[3]\n", batched.toString());
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.jsonstream.parser;
+
+import org.example.jsonstream.tokenizer.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyASTTest {
+    
+    private static final String SOURCE =
+        "{ \"foo\" : [1, -2, 12345678901, -3.25, \"bar\", []],\n" +
+        "  \"baz\" : { \"gorch\" : [true, false, null], \"esc\\\"aped\" : \"a \\\"quote\\\" and caf\\u00e9\" },\n" +
+        "  \"empty\" : {}, \"déjà\" : \"vu ü\" }";
+    
+    private static AST.Node parse(String source) {
+        Parser parser = new Parser();
+        new Tokenizer(new Scanner(source)).stream().forEach(parser::consumeToken);
+        return parser.getRoot();
+    }
+    
+    @Test
+    void LazyASTTest_SameAsParser () {
+        assertEquals(parse(SOURCE).toJSON(), LazyAST.parse(SOURCE).toJSON());
+        assertEquals("[1,\"two\",{\"three\":[3]}]", LazyAST.parse(" [1, \"two\", {\"three\": [3]}] ").toJSON());
+        
+        // it takes the same roots as the Tokenizer does
+        assertThrows(IllegalArgumentException.class, () -> LazyAST.parse("\"just a string\""));
+        assertThrows(IllegalArgumentException.class, () -> LazyAST.parse("42"));
+        assertThrows(IllegalArgumentException.class, () -> LazyAST.parse("}"));
+    }
+    
+    @Test
+    void LazyASTTest_Navigate () {
+        AST.Node root = LazyAST.parse(SOURCE);
+        assertInstanceOf(AST.ObjectNode.class, root);
+        
+        AST.ObjectNode object = (AST.ObjectNode) root;
+        assertEquals(4, object.properties().size());
+        assertEquals("foo", object.properties().get(0).getKey());
+        
+        AST.ArrayNode foo = (AST.ArrayNode) object.get("foo");
+        assertEquals(6, foo.items().size());
+        assertEquals(1, ((AST.IntNode) foo.items().get(0).getValue()).getValue());
+        assertEquals(12345678901L, ((AST.LongNode) foo.items().get(2).getValue()).getValue());
+        assertEquals(-3.25, ((AST.DoubleNode) foo.items().get(3).getValue()).getValue());
+        assertEquals("bar", ((AST.StringNode) foo.items().get(4).getValue()).getValue());
+        assertTrue(((AST.ArrayNode) foo.items().get(5).getValue()).items().isEmpty());
+        
+        AST.ObjectNode baz = (AST.ObjectNode) object.get("baz");
+        assertEquals("a \"quote\" and café", ((AST.StringNode) baz.get("esc\"aped")).getValue());
+        assertInstanceOf(AST.NullNode.class, ((AST.ArrayNode) baz.get("gorch")).items().get(2).getValue());
+        
+        assertEquals("vu ü", ((AST.StringNode) object.get("déjà")).getValue());
+        assertTrue(((AST.ObjectNode) object.get("empty")).properties().isEmpty());
+        
+        // and it can be added to like any other
+        object.addProperty(AST.newProperty().addKey("more").addValue(AST.newTrue()));
+        assertTrue(object.has("more"));
+    }
+    
+    @Test
+    void LazyASTTest_OnlyWhatIsLookedAt () {
+        // the second item is broken, but nobody has looked in it yet
+        AST.ArrayNode root = (AST.ArrayNode) LazyAST.parse("[{\"ok\":true}, {\"bad\" tru}, [1, }]");
+        assertEquals(3, root.items().size());
+        assertTrue(((AST.ObjectNode) root.items().get(0).getValue()).has("ok"));
+        
+        AST.ObjectNode bad = (AST.ObjectNode) root.items().get(1).getValue();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, bad::properties);
+        assertTrue(e.getMessage().contains("Expected (:)"), e.getMessage());
+        
+        // and it goes on being broken, rather than being half read
+        assertSame(e, assertThrows(IllegalArgumentException.class, bad::properties));
+        assertThrows(IllegalArgumentException.class, () -> bad.has("bad"));
+        
+        AST.ArrayNode worse = (AST.ArrayNode) root.items().get(2).getValue();
+        assertThrows(IllegalArgumentException.class, worse::items);
+        assertThrows(IllegalArgumentException.class, worse::toJSON);
+        
+        // but the brackets have to match up for it to be skipped at all
+        assertThrows(IllegalArgumentException.class, () -> LazyAST.parse("[[1, 2]"));
+        assertThrows(IllegalArgumentException.class, () -> LazyAST.parse("[1] 2"));
+        assertThrows(IllegalArgumentException.class, () -> LazyAST.parse(""));
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.jsonstream.parser;
+
+import org.example.jsonstream.tokenizer.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodePoolTest {
+    
+    private static final String SOURCE = "{\"foo\":[1,2.5,\"three\",{\"bar\":null}],\"baz\":{\"t\":true,\"f\":false}}";
+    
+    @Test
+    void NodePoolTest_Reuse () {
+        NodePool pool = new NodePool();
+        Scanner scanner = new Scanner(SOURCE);
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        Parser parser = new Parser().withNodePool(pool);
+        
+        tokenizer.drive(parser.asHandler());
+        AST.ObjectNode first = (AST.ObjectNode) parser.getRoot();
+        assertEquals(SOURCE, first.toJSON());
+        assertEquals(0, pool.getReused());
+        assertTrue(first.has("baz"));
+        
+        // it all goes back, and the next one is built out of it
+        parser.reset();
+        assertTrue(first.properties().isEmpty());
+        assertEquals(3 + 1 + 5 + 4, pool.available());
+        
+        scanner.restart(SOURCE);
+        tokenizer.reset().drive(parser.asHandler());
+        assertEquals(SOURCE, parser.getRoot().toJSON());
+        assertEquals(0, pool.available());
+        assertEquals(13, pool.getReused());
+        
+        // and the one the index was built for lost it too
+        assertTrue(((AST.ObjectNode) parser.getRoot()).has("baz"));
+        
+        // the constants are all the same node
+        assertSame(pool.newTrue(), pool.newTrue());
+        assertSame(NodePool.forThread(), NodePool.forThread());
+    }
+    
+    @Test
+    void NodePoolTest_Limits () {
+        // five arrays and four items, but only two of each are kept
+        NodePool pool = new NodePool(2);
+        Parser parser = new Parser();
+        new Tokenizer(new Scanner("[[],[],[],[]]")).drive(parser.asHandler());
+        pool.release(parser.getRoot());
+        assertEquals(2 + 2, pool.available());
+        
+        // the unfinished part of a document goes back too
+        pool = new NodePool();
+        parser = new Parser().withNodePool(pool);
+        FeedableScanner scanner = new FeedableScanner();
+        scanner.feed(ByteBuffer.wrap("[1, [2, [3".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Tokens.Type.NEED_MORE_INPUT, new Tokenizer(scanner).drive(parser.asHandler()));
+        parser.reset();
+        assertEquals(3 + 4, pool.available());
+        
+        // but nodes which aren't plain AST nodes never do
+        pool = new NodePool();
+        pool.release(LazyAST.parse("{\"a\":[1]}"));
+        assertEquals(0, pool.available());
+    }
+}
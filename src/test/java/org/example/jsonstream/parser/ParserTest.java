@@ -4,6 +4,10 @@ import org.example.jsonstream.tokenizer.*;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ParserTest {
@@ -38,4 +42,95 @@ class ParserTest {
         
     }
     
+    @Test
+    void consumeTokensFromStreamingScanner() {
+        final String expected = "{\"foo\":true,\"bar\":[10,3.14,{},null],\"baz\":false,\"gorch\":\"a rather long string value\"}";
+        
+        Scanner scanner = new Scanner(new StringReader(expected), 4);
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        Parser parser = new Parser();
+        
+        tokenizer.stream().forEach(parser::consumeToken);
+        
+        assertTrue(parser.hasRoot());
+        assertEquals(expected, parser.getRoot().toJSON());
+    }
+    
+    @Test
+    void parseFromCursor() {
+        final String expected = "{\"foo\":true,\"bar\":[10,3.14,{},null,12345678901],\"baz\":\"gorch\"}";
+        
+        Parser parser = new Parser();
+        parser.parse(new Tokenizer(new Scanner(expected)));
+        
+        assertTrue(parser.hasRoot());
+        assertEquals(expected, parser.getRoot().toJSON());
+    }
+    
+    @Test
+    void driveTheHandler() {
+        final String expected = "{\"foo\":true,\"bar\":[10,3.14,{},null,12345678901],\"baz\":\"gorch\"}";
+        
+        Parser parser = new Parser();
+        new Tokenizer(new Scanner(expected)).drive(parser.asHandler());
+        
+        assertTrue(parser.hasRoot());
+        assertEquals(expected, parser.getRoot().toJSON());
+    }
+    
+    @Test
+    void driveTheHandlerAsInputArrives() {
+        FeedableScanner scanner = new FeedableScanner();
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        Parser parser = new Parser();
+        
+        scanner.feed(ByteBuffer.wrap("[1, {\"a\": tr".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Tokens.Type.NEED_MORE_INPUT, tokenizer.drive(parser.asHandler()));
+        assertFalse(parser.hasRoot());
+        
+        scanner.feed(ByteBuffer.wrap("ue}]".getBytes(StandardCharsets.UTF_8)));
+        scanner.endOfInput();
+        assertEquals(Tokens.Type.NO_TOKEN, tokenizer.drive(parser.asHandler()));
+        assertEquals("[1,{\"a\":true}]", parser.getRoot().toJSON());
+    }
+    
+    @Test
+    void resetForTheNextDocument() {
+        String[] documents = {
+            "{\"foo\":[1,2,{\"bar\":null}]}",
+            "[true,false]",
+            "{\"broken\":[1,",
+            "{\"a\":{\"b\":{\"c\":[]}}}"
+        };
+        
+        // the same three of everything, over and over
+        Scanner scanner = new Scanner("");
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        Parser parser = new Parser();
+        for (String document : documents) {
+            scanner.restart(document);
+            tokenizer.reset();
+            parser.reset();
+            assertFalse(parser.hasRoot());
+            
+            Tokens.Type last = tokenizer.drive(parser.asHandler());
+            if (document.startsWith("{\"broken")) {
+                assertEquals(Tokens.Type.ERROR_TOKEN, last);
+                assertFalse(parser.hasRoot());
+            } else {
+                assertEquals(Tokens.Type.NO_TOKEN, last);
+                assertEquals(document, parser.getRoot().toJSON());
+            }
+        }
+    }
+    
+    @Test
+    void valuesWithNowhereToGo() {
+        // a value before anything has started, or straight in an object
+        assertThrows(IllegalStateException.class, () -> new Parser().consumeToken(new Tokens.AddInt(1)));
+        
+        Parser parser = new Parser();
+        parser.consumeToken(new Tokens.StartObject());
+        assertThrows(IllegalStateException.class, () -> parser.consumeToken(new Tokens.AddTrue()));
+    }
 }
@@ -7,6 +7,8 @@ import org.junit.jupiter.api.Test;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 class ObjectQueryTest {
     
     @Test
@@ -80,4 +82,74 @@ class ObjectQueryTest {
         }
     }
     
+    @Test
+    void ObjectQuery_CursorMatchesTokenProducer () throws QueryException {
+        
+        String source = "{\"foo\":10,\"skip\":{\"foo\":[1,2]},\"baz\":[true,{\"gorch\":35}],\"bar\":\"x\"}";
+        
+        // the Tokenizer goes through the cursor
+        ObjectQuery fromCursor = new ObjectQuery().captureValueOf("foo").captureValueOf("baz").captureValueOf("bar");
+        fromCursor.execute(new Tokenizer(new Scanner(source)));
+        
+        List<Tokens.Token> tokens = new Tokenizer(new Scanner(source)).stream().collect(Collectors.toList());
+        ObjectQuery fromTokens = new ObjectQuery().captureValueOf("foo").captureValueOf("baz").captureValueOf("bar");
+        fromTokens.execute(TokenProducer.of(tokens));
+        
+        for (String key : List.of("foo", "baz", "bar")) {
+            assertEquals(fromTokens.getResultsFor(key).toString(), fromCursor.getResultsFor(key).toString());
+        }
+        assertEquals("[AddInt[10]]", fromCursor.getResultsFor("foo").toString());
+        assertNull(fromCursor.getResultsFor("skip"));
+    }
+    
+    @Test
+    void ObjectQuery_ReplaysTapes () throws QueryException {
+        ObjectQuery objectQuery = new ObjectQuery().captureValueOf("baz");
+        objectQuery.execute(new Tokenizer(new Scanner("{\"foo\":10,\"baz\":[true,10,{\"gorch\":35},[100,false]],\"bar\":3.14}")));
+        
+        // the same value every time
+        for (int run = 0; run < 2; run++) {
+            Parser parser = new Parser();
+            parser.parse(objectQuery.getTapeFor("baz"));
+            assertEquals("[true,10,{\"gorch\":35},[100,false]]", parser.getRoot().toJSON());
+        }
+        assertNull(objectQuery.getTapeFor("foo"));
+    }
+    
+    @Test
+    void ObjectQuery_AsConsumer () throws QueryException {
+        
+        String source = "{\"foo\":10,\"skip\":{\"foo\":[1,2]},\"baz\":[true,{\"gorch\":35}],\"bar\":\"x\",\"rest\":[1,2,3]}";
+        
+        ObjectQuery pulled = new ObjectQuery().captureValueOf("foo").captureValueOf("baz").captureValueOf("bar");
+        pulled.execute(new Tokenizer(new Scanner(source)));
+        
+        // a batch at a time, and a token at a time
+        ObjectQuery batched = new ObjectQuery().captureValueOf("foo").captureValueOf("baz").captureValueOf("bar");
+        new TokenBroadcaster(3).attach(batched.asConsumer()).broadcast(new Tokenizer(new Scanner(source)));
+        batched.finish();
+        
+        ObjectQuery pushed = new ObjectQuery().captureValueOf("foo").captureValueOf("baz").captureValueOf("bar");
+        TokenConsumer consumer = pushed.asConsumer();
+        Tokenizer tokenizer = new Tokenizer(new Scanner(source));
+        while (!consumer.isSatisfied()) consumer.consumeToken(tokenizer.produceToken());
+        pushed.finish();
+        
+        for (String key : List.of("foo", "baz", "bar")) {
+            assertEquals(pulled.getResultsFor(key).toString(), batched.getResultsFor(key).toString());
+            assertEquals(pulled.getResultsFor(key).toString(), pushed.getResultsFor(key).toString());
+        }
+        
+        // it was satisfied once it had "bar", so it never saw "rest"
+        assertEquals(Tokens.Type.START_PROPERTY, tokenizer.next());
+        assertEquals(Tokens.Type.ADD_KEY, tokenizer.next());
+        assertEquals("rest", tokenizer.currentKey());
+        
+        // and anything that went wrong comes out of finish()
+        ObjectQuery failed = new ObjectQuery().captureValueOf("foo");
+        consumer = failed.asConsumer();
+        new TokenBroadcaster().attach(consumer).broadcast(new Tokenizer(new Scanner("[1,2]")));
+        assertTrue(consumer.isSatisfied());
+        assertThrows(QueryException.class, failed::finish);
+    }
 }
@@ -0,0 +1,107 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+class ByteScannerTest {
+    
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private final String SOURCE = "[\"föö\", 10, { \"bär\" : 3.14 }, true, false, null]";
+    
+    @Test
+    void ByteScannerTest_ByteBuffer () {
+        ByteScanner scanner = new ByteScanner(ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)));
+        
+        List<Scans.Scan> tokens = scanner.stream().collect(Collectors.toList());
+        
+        assertEquals(17, tokens.size());
+        assertEquals("[", tokens.get(0).getValue());
+        assertTrue(tokens.get(1).isString());
+        assertEquals("\"föö\"", tokens.get(1).getValue());
+        assertEquals("föö", tokens.get(1).getContent());
+        assertEquals("10", tokens.get(3).getValue());
+        assertEquals("bär", tokens.get(6).getContent());
+        assertEquals("3.14", tokens.get(8).getValue());
+        assertEquals("true", tokens.get(11).getValue());
+        assertEquals("null", tokens.get(15).getValue());
+        assertEquals("]", tokens.get(16).getValue());
+    }
+    
+    @Test
+    void ByteScannerTest_Escapes () {
+        String source = "[\"a\\\"b\", \"n\u00f8 escapes\", \"\\u00f8\\\\\"]";
+        
+        for (ByteScanner scanner : List.of(new ByteScanner(utf8(source)), ByteScanner.indexed(utf8(source)))) {
+            List<String> strings = new ArrayList<>();
+            new Tokenizer(scanner).stream()
+                .filter((t) -> t instanceof Tokens.AddString)
+                .forEach((t) -> strings.add(((Tokens.AddString) t).getValue()));
+            
+            assertEquals(List.of("a\"b", "n\u00f8 escapes", "\u00f8\\"), strings);
+        }
+    }
+    
+    @Test
+    void ByteScannerTest_MappedFile (@TempDir Path dir) throws IOException {
+        final String expected = "{\"foo\":true,\"bar\":[10,3.14,{},null],\"baz\":\"gørch gørch gørch\"}";
+        Path file = Files.writeString(dir.resolve("test.json"), expected);
+        
+        // a tiny window makes most of the tokens span a remapping
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        Tokenizer tokenizer = new Tokenizer(new ByteScanner(channel, 3));
+        Parser parser = new Parser();
+        
+        tokenizer.stream().forEach(parser::consumeToken);
+        
+        assertTrue(parser.hasRoot());
+        assertEquals(expected, parser.getRoot().toJSON());
+        
+        // it was given the channel, so it isn't the one to close it
+        ((ByteScanner) tokenizer.getScanner()).close();
+        assertTrue(channel.isOpen());
+        channel.close();
+    }
+    
+    @Test
+    void ByteScannerTest_WindowGrowth () {
+        assertEquals(8, ByteScanner.grow(4, 4));
+        assertEquals(16, ByteScanner.grow(4, 9));
+        
+        // it stops at the largest mapping there can be, rather than overflowing
+        assertEquals(Integer.MAX_VALUE, ByteScanner.grow(1 << 30, 1 << 30));
+        assertEquals(Integer.MAX_VALUE, ByteScanner.grow(ByteScanner.DEFAULT_WINDOW_SIZE, Integer.MAX_VALUE - 1));
+        assertThrows(IllegalStateException.class, () -> ByteScanner.grow(Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+    
+    @Test
+    void ByteScannerTest_Open (@TempDir Path dir) throws IOException {
+        Path file = Files.writeString(dir.resolve("test.json"), "[\"foo\",\"bar\"]");
+        
+        try (ByteScanner scanner = ByteScanner.open(file)) {
+            Tokenizer tokenizer = new Tokenizer(scanner);
+        
+            List<String> values = tokenizer.stream()
+                                      .filter((t) -> t instanceof Tokens.AddString)
+                                      .map((t) -> ((Tokens.AddString) t).getValue())
+                                      .collect(Collectors.toList());
+        
+            assertEquals(List.of("foo", "bar"), values);
+        }
+    }
+}
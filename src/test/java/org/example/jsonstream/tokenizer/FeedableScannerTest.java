@@ -0,0 +1,132 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+class FeedableScannerTest {
+    
+    private final String SOURCE = "{\"föö\" : [10, -3.14e2, \"bär \\\"baz\\\"\", true, false, null], \"big\" : 12345678901}";
+    
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    void FeedableScannerTest_Scans () {
+        FeedableScanner scanner = new FeedableScanner();
+        
+        assertEquals(Scans.ScanType.NEED_MORE_INPUT, scanner.peekScan());
+        
+        scanner.feed(utf8("[\"fo"));
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        // part way through the string
+        assertEquals(Scans.ScanType.NEED_MORE_INPUT, scanner.scan());
+        
+        scanner.feed(utf8("o\", 12"));
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals("foo", scanner.getScanContent());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        // the number could still go on
+        assertEquals(Scans.ScanType.NEED_MORE_INPUT, scanner.peekScan());
+        
+        scanner.feed(utf8("3, tr"));
+        assertEquals(Scans.ScanType.INTEGER, scanner.scan());
+        assertEquals(123, scanner.getScanLong());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.NEED_MORE_INPUT, scanner.scan());
+        
+        scanner.feed(utf8("ue]  "));
+        assertEquals(Scans.ScanType.KEYWORD, scanner.scan());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.NEED_MORE_INPUT, scanner.scan());
+        
+        scanner.endOfInput();
+        assertEquals(Scans.ScanType.END, scanner.scan());
+        assertThrows(IllegalStateException.class, () -> scanner.feed(utf8("[]")));
+    }
+    
+    @Test
+    void FeedableScannerTest_TokenizerResumes () {
+        List<String> expected = new Tokenizer(new Scanner(SOURCE)).stream()
+                                    .map(Tokens.Token::toString)
+                                    .collect(Collectors.toList());
+        
+        // every possible place for a chunk to end, even in the
+        // middle of a multi-byte char, gives the same tokens
+        byte[] bytes = SOURCE.getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            FeedableScanner scanner = new FeedableScanner(4);
+            Tokenizer tokenizer = new Tokenizer(scanner);
+            
+            List<String> tokens = new ArrayList<>();
+            int needed = 0;
+            for (int from = 0; !tokenizer.isDone(); from += chunk) {
+                if (from < bytes.length) {
+                    scanner.feed(ByteBuffer.wrap(bytes, from, Math.min(chunk, bytes.length - from)));
+                } else {
+                    scanner.endOfInput();
+                }
+                Tokens.Token token;
+                while (!(token = tokenizer.produceToken()).isTerminal()) tokens.add(token.toString());
+                if (token instanceof Tokens.NeedMoreInput) needed++;
+            }
+            
+            assertEquals(expected, tokens, "chunk size " + chunk);
+            assertTrue(tokenizer.isInEndState());
+            assertTrue(needed > 0);
+        }
+    }
+    
+    @Test
+    void FeedableScannerTest_SkipValueResumes () {
+        String source = "{\"skip\" : {\"x\" : [1, \"]}\\\"\", {}]}, \"keep\" : [true]}";
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            FeedableScanner scanner = new FeedableScanner(4);
+            Tokenizer tokenizer = new Tokenizer(scanner);
+            
+            List<String> tokens = new ArrayList<>();
+            for (int from = 0; !tokenizer.isDone(); from += chunk) {
+                if (from < bytes.length) {
+                    scanner.feed(ByteBuffer.wrap(bytes, from, Math.min(chunk, bytes.length - from)));
+                } else {
+                    scanner.endOfInput();
+                }
+                Tokens.Type type;
+                while (!(type = tokenizer.next()).isTerminal()) {
+                    tokens.add(tokenizer.currentToken().toString());
+                    if (type == Tokens.Type.ADD_KEY && tokenizer.currentKey().equals("skip")) tokenizer.skipValue();
+                }
+            }
+            
+            assertEquals(
+                "[StartObject, StartProperty, AddKey[skip], EndProperty, StartProperty, AddKey[keep], StartArray, " +
+                "StartItem, AddTrue, EndItem, EndArray, EndProperty, EndObject]",
+                tokens.toString(),
+                "chunk size " + chunk
+            );
+        }
+    }
+    
+    @Test
+    void FeedableScannerTest_Parser () {
+        FeedableScanner scanner = new FeedableScanner();
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        Parser parser = new Parser();
+        
+        scanner.feed(utf8("[1, {\"a\":"));
+        tokenizer.stream().forEach(parser::consumeToken);
+        assertFalse(parser.hasRoot());
+        
+        scanner.feed(utf8("true}]"));
+        tokenizer.stream().forEach(parser::consumeToken);
+        assertEquals("[1,{\"a\":true}]", parser.getRoot().toJSON());
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.AST;
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class KeyCacheTest {
+    
+    private static final String SOURCE = "{\"id\":1,\"name\":\"a\",\"caf\\u00e9\":true,\"déjà\":null,\"tags\":{\"id\":2}}";
+    
+    private static List<String> keys(Tokenizer tokenizer) {
+        List<String> keys = new ArrayList<>();
+        Tokens.Type type;
+        while (!(type = tokenizer.next()).isTerminal()) {
+            if (type == Tokens.Type.ADD_KEY) keys.add(tokenizer.currentKey());
+        }
+        return keys;
+    }
+    
+    @Test
+    void KeyCacheTest_SameInstance () {
+        KeyCache cache = new KeyCache();
+        List<String> expected = List.of("id", "name", "café", "déjà", "tags", "id");
+        
+        // chars and bytes, across documents, are all the same keys
+        List<String> first = keys(new Tokenizer(new Scanner(SOURCE)).withKeyCache(cache));
+        List<String> second = keys(new Tokenizer(new ByteScanner(ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)))).withKeyCache(cache));
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(first.get(i), second.get(i), expected.get(i));
+        }
+        assertSame(first.get(0), first.get(5));
+        
+        // the first time each of the five is a miss, everything after is a hit
+        assertEquals(5, cache.getMisses());
+        assertEquals(7, cache.getHits());
+        assertSame(first.get(1), cache.intern(new String("name")));
+        
+        cache.clear();
+        assertEquals(0, cache.getHits());
+        assertNotSame(first.get(1), keys(new Tokenizer(new Scanner(SOURCE)).withKeyCache(cache)).get(1));
+    }
+    
+    @Test
+    void KeyCacheTest_TheTokensToo () {
+        KeyCache cache = new KeyCache(16);
+        String source = "{\"aa\":1}\n{\"aa\":2}\n";
+        
+        // the ones which are made, and the ones which are parsed
+        Tokenizer tokenizer = new Tokenizer(new Scanner(source)).withMultipleDocuments().withKeyCache(cache);
+        List<String> keys = new ArrayList<>();
+        tokenizer.stream().filter((t) -> t instanceof Tokens.AddKey).forEach((t) -> keys.add(((Tokens.AddKey) t).getValue()));
+        tokenizer.stream().filter((t) -> t instanceof Tokens.AddKey).forEach((t) -> keys.add(((Tokens.AddKey) t).getValue()));
+        assertEquals(2, keys.size());
+        assertSame(keys.get(0), keys.get(1));
+        
+        Parser parser = new Parser();
+        new Tokenizer(new Scanner("{\"aa\":3}")).withKeyCache(cache).drive(parser.asHandler());
+        assertSame(keys.get(0), ((AST.ObjectNode) parser.getRoot()).properties().get(0).getKey());
+        
+        // a long one is never kept
+        String key = "k".repeat(KeyCache.MAX_LENGTH + 1);
+        List<String> longs = keys(new Tokenizer(new Scanner("[{\"" + key + "\":1},{\"" + key + "\":2}]")).withKeyCache(cache));
+        assertEquals(key, longs.get(0));
+        assertNotSame(longs.get(0), longs.get(1));
+    }
+    
+    @Test
+    void KeyCacheTest_Threads () throws Exception {
+        KeyCache cache = new KeyCache(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    List<String> all = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        all.addAll(keys(new Tokenizer(new Scanner("{\"k" + (i % 100) + "\":1}")).withKeyCache(cache)));
+                    }
+                    return all;
+                }));
+            }
+            for (Future<List<String>> result : results) {
+                List<String> all = result.get();
+                for (int i = 0; i < 1000; i++) assertEquals("k" + (i % 100), all.get(i));
+            }
+            assertEquals(4000, cache.getHits() + cache.getMisses());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -4,6 +4,11 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Collectors;
 import java.util.*;
 
@@ -46,6 +51,341 @@ class ScannerTest {
         testTokenList(tokens);
     }
     
+    @Test
+    void ScannerTest_Reader () {
+        // a tiny buffer makes most of the tokens span a refill
+        Scanner scanner = new Scanner(new StringReader(SOURCE), 3);
+        
+        List<Scans.Scan> tokens = new ArrayList<>();
+        while (scanner.hasMore()) {
+            tokens.add(scanner.getNextScan());
+        }
+        
+        testTokenList(tokens);
+    }
+    
+    @Test
+    void ScannerTest_ReaderWithPeek () {
+        Scanner scanner = new Scanner(new StringReader(SOURCE), 2);
+        
+        List<Scans.Scan> tokens = new ArrayList<>();
+        while (scanner.hasMore()) {
+            Scans.Scan peeked = scanner.peekNextScan();
+            Scans.Scan next = scanner.getNextScan();
+            assertEquals(peeked.getType(), next.getType());
+            assertEquals(peeked.getValue(), next.getValue());
+            tokens.add(next);
+        }
+        
+        testTokenList(tokens);
+    }
+    
+    @Test
+    void ScannerTest_InputStream () {
+        Scanner scanner = new Scanner(new ByteArrayInputStream(SOURCE.getBytes(StandardCharsets.UTF_8)));
+        
+        List<Scans.Scan> tokens = scanner.stream().collect(Collectors.toList());
+        
+        testTokenList(tokens);
+    }
+    
+    @Test
+    void ScannerTest_ScanState () {
+        Scanner scanner = new Scanner(SOURCE);
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals('[', scanner.getScanChar());
+        
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals("\"foo\"", scanner.getScanValue());
+        assertEquals("foo", scanner.getScanContent());
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(',', scanner.getScanChar());
+        
+        assertEquals(Scans.ScanType.INTEGER, scanner.peekScan());
+        assertEquals(10, scanner.getScanInt());
+        assertEquals(Scans.ScanType.INTEGER, scanner.scan());
+        assertEquals(10, scanner.getScanInt());
+        
+        while (scanner.scan() != Scans.ScanType.KEYWORD) {}
+        assertEquals('t', scanner.getScanChar());
+        
+        while (scanner.scan() != Scans.ScanType.END) {}
+        assertEquals(-1, scanner.getScanChar());
+    }
+    
+    @Test
+    void ScannerTest_MarkAndReset () {
+        Scanner scanner = new Scanner(SOURCE);
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.STRING, scanner.peekScan());
+        
+        scanner.mark();
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.INTEGER, scanner.scan());
+        scanner.reset();
+        
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals("foo", scanner.getScanContent());
+    }
+    
+    // counts how often the source is looked at
+    private static class CountingScanner extends Scanner {
+        int reads = 0;
+        CountingScanner(String source) { super(source); }
+        @Override
+        protected int charAt(int pos) {
+            reads++;
+            return super.charAt(pos);
+        }
+    }
+    
+    @Test
+    void ScannerTest_LookaheadDoesNotRescan () {
+        StringBuilder source = new StringBuilder("{");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) source.append(',');
+            source.append("\"key").append(i).append("\":\"a string value which is scanned only once\"");
+        }
+        source.append('}');
+        
+        CountingScanner scanner = new CountingScanner(source.toString());
+        new Tokenizer(scanner).stream().forEach((t) -> {});
+        
+        // every char is looked at once, and operators once more
+        // when the tokenizer dispatches on them, when peeking used
+        // to rescan everything this came to well over 2x
+        assertTrue(scanner.reads < source.length() * 1.2, "reads: " + scanner.reads + " for length: " + source.length());
+    }
+    
+    @Test
+    void ScannerTest_Numbers () {
+        List<String> numbers = new ArrayList<>(List.of(
+            "0", "-0", "-0.0", "1e3", "1E+3", "2.5e-3", "9007199254740993", "1.7976931348623157e308",
+            "4.9e-324", "1e400", "123456789012345678901234567890", "0.1", "3.14159265358979323846",
+            "9223372036854775807", "-9223372036854775808", "1e23", "8.41e21"
+        ));
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            numbers.add(Double.toString(Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE)));
+            numbers.add(random.nextLong() + "." + random.nextInt(1000000) + "e" + (random.nextInt(60) - 30));
+        }
+        
+        for (String number : numbers) {
+            Scanner scanner = new Scanner("[" + number + "]");
+            scanner.scan();
+            scanner.scan();
+            assertEquals(Double.parseDouble(number), scanner.getScanDouble(), number);
+            assertEquals(new BigDecimal(number), scanner.getScanBigDecimal(), number);
+        }
+        
+        Scanner scanner = new Scanner("-9223372036854775808 9223372036854775808");
+        assertEquals(Scans.ScanType.INTEGER, scanner.scan());
+        assertTrue(scanner.isScanLong());
+        assertEquals(Long.MIN_VALUE, scanner.getScanLong());
+        assertEquals(Scans.ScanType.INTEGER, scanner.scan());
+        assertFalse(scanner.isScanLong());
+        
+        for (String bad : List.of("-", "01", "1.", "1.e3", "1e", "1e+")) {
+            scanner = new Scanner(bad);
+            assertEquals(Scans.ScanType.ERROR, scanner.scan(), bad);
+        }
+    }
+    
+    @Test
+    void ScannerTest_NumbersAcrossRefills () {
+        // numbers which don't fit in what is left of the window, so
+        // it has to move (or grow) while they are being scanned
+        List<String> numbers = new ArrayList<>(List.of("1", "-0", "1.5e-3", "9223372036854775807", "0", "-9223372036854775808"));
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            numbers.add(Long.toString(random.nextLong()));
+            numbers.add("-" + Math.abs(random.nextInt()) + "." + random.nextInt(1000) + "e-" + random.nextInt(20));
+        }
+        String source = "[" + String.join(",", numbers) + "]";
+        
+        for (int size : List.of(1, 2, 3, 7, 16)) {
+            Scanner scanner = new Scanner(new StringReader(source), size);
+            assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+            for (String number : numbers) {
+                assertNotEquals(Scans.ScanType.ERROR, scanner.scan(), number + " with " + size);
+                assertEquals(new BigDecimal(number), scanner.getScanBigDecimal(), number + " with " + size);
+                assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+            }
+        }
+        
+        // and leading zeros are still caught when the window moves
+        assertEquals(Scans.ScanType.ERROR, new Scanner(new StringReader("-01"), 1).scan());
+    }
+    
+    @Test
+    void ScannerTest_Escapes () {
+        Scanner scanner = new Scanner("[\"plain\", \"a\\\"b\\\\c\\/d\\n\\u00e9\\uD83D\\uDE00\", \"bad \\x\"]");
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals("plain", scanner.getScanContent());
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals("a\"b\\c/d\n\u00e9\uD83D\uDE00", scanner.getScanContent());
+        assertEquals("a\"b\\c/d\n\u00e9\uD83D\uDE00", scanner.getDeferredScanContent().get());
+        assertEquals("a\nb", new Scans.Constant("\"a\\nb\"", Scans.ScanType.STRING).getContent());
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.ERROR, scanner.scan());
+        assertTrue(scanner.getScanValue().startsWith("Invalid escape sequence"));
+    }
+    
+    @Test
+    void ScannerTest_Keywords () {
+        // split across the buffer, so they can't be matched in one go
+        Scanner scanner = new Scanner(new StringReader("[true,false,null]"), 3);
+        List<String> keywords = new ArrayList<>();
+        while (scanner.hasMore()) {
+            Scans.Scan scan = scanner.getNextScan();
+            if (scan.isKeyword()) keywords.add(scan.getValue());
+        }
+        assertEquals(List.of("true", "false", "null"), keywords);
+        
+        // only the low byte of \u0175 is a 'u'
+        assertEquals(Scans.ScanType.ERROR, new Scanner("tr\u0175e").scan());
+        assertEquals(Scans.ScanType.ERROR, new Scanner("nul").scan());
+        // JSON has just the four whitespace chars
+        assertEquals(Scans.ScanType.KEYWORD, new Scanner(" \t\r\n true").scan());
+        assertEquals(Scans.ScanType.ERROR, new Scanner("\f true").scan());
+    }
+    
+    @Test
+    void ScannerTest_SkipValue () {
+        String source = "[{\"a\":[1,{\"b\":\"}]\\\"[\"}],\"c\":null}, \"s\", 10, true, [], ]";
+        // a tiny window so the skips have to refill as they go
+        Scanner scanner = new Scanner(new StringReader(source), 4);
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.skipValue());
+        assertEquals('}', scanner.getScanChar());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        
+        assertEquals(Scans.ScanType.STRING, scanner.skipValue());
+        assertEquals("s", scanner.getScanContent());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.INTEGER, scanner.skipValue());
+        assertEquals(10, scanner.getScanInt());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.KEYWORD, scanner.skipValue());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.skipValue());
+        assertEquals(']', scanner.getScanChar());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        
+        // which is not a value
+        assertEquals(Scans.ScanType.ERROR, scanner.skipValue());
+        
+        assertEquals(Scans.ScanType.ERROR, new Scanner("[1, \"2").skipValue());
+        assertEquals(Scans.ScanType.ERROR, new Scanner("[1, [2]").skipValue());
+    }
+    
+    @Test
+    void ScannerTest_SkipRest () {
+        Scanner scanner = new Scanner("{\"a\":[1,\"]\"],\"b\":{}} 10");
+        
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.STRING, scanner.peekScan());
+        
+        // up to the closing bracket, which is peeked
+        assertEquals(Scans.ScanType.OPERATOR, scanner.skipRest());
+        assertEquals('}', scanner.getScanChar());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(Scans.ScanType.INTEGER, scanner.scan());
+    }
+    
+    @Test
+    void ScannerTest_Resync () {
+        String source = "{\"a\":[1, \"x\n{\"b\":2}\n  {\"c\":3}\n[4]";
+        
+        // a small buffer, so it has to refill along the way
+        Scanner scanner = new Scanner(new StringReader(source), 4);
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals(0, scanner.getScanStart());
+        assertEquals(1, scanner.getScanEnd());
+        assertEquals(Scans.ScanType.STRING, scanner.scan());
+        assertEquals(1, scanner.getScanStart());
+        assertEquals(4, scanner.getScanEnd());
+        
+        // on to the next line starting with a bracket, which is peeked
+        assertEquals(Scans.ScanType.OPERATOR, scanner.resync());
+        assertEquals('{', scanner.getScanChar());
+        assertEquals(source.indexOf("{\"b\""), scanner.getScanStart());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.scan());
+        assertEquals("\"b\"", scanner.getNextScan().getValue());
+        
+        // an indented line doesn't count
+        assertEquals(Scans.ScanType.OPERATOR, scanner.resync());
+        assertEquals('[', scanner.getScanChar());
+        assertEquals(source.lastIndexOf('['), scanner.getScanStart());
+        
+        // and if there is no next line, that's the end
+        scanner.scan();
+        scanner.scan();
+        assertEquals(Scans.ScanType.END, scanner.resync());
+        
+        // the bad scan itself can be the start of the next line
+        scanner = new Scanner("[1,\n{\"a\":1}");
+        scanner.scan();
+        scanner.scan();
+        scanner.scan();
+        assertEquals(Scans.ScanType.OPERATOR, scanner.peekScan());
+        assertEquals(Scans.ScanType.OPERATOR, scanner.resync());
+        assertEquals(4, scanner.getScanStart());
+    }
+    
+    @Test
+    void ScannerTest_SeekAndSkip () {
+        String source = "{\"a\": [1, \"]}\", {\"b\": [[]]}], \"c\": 2}";
+        ByteBuffer bytes = ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+        
+        // the same with and without the index to skip on
+        for (ByteScanner scanner : List.of(new ByteScanner(bytes), ByteScanner.indexed(bytes))) {
+            scanner.seek(source.indexOf('['));
+            assertEquals(Scans.ScanType.OPERATOR, scanner.skipValue());
+            assertEquals(source.indexOf("], \"c\""), scanner.getScanStart());
+            assertEquals(",", scanner.getNextScan().getValue());
+            assertEquals("\"c\"", scanner.getNextScan().getValue());
+            
+            // back to the start, and skip the rest of it
+            scanner.seek(1);
+            assertEquals(Scans.ScanType.OPERATOR, scanner.skipRest());
+            assertEquals('}', scanner.getScanChar());
+            assertEquals(source.length() - 1, scanner.getScanStart());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ByteScanner(bytes).seek(source.length() + 1));
+    }
+    
+    @Test
+    void ScannerTest_RestartOnNewInput () {
+        Scanner scanner = new Scanner("");
+        assertEquals(Scans.ScanType.END, scanner.scan());
+        
+        // from a reader, with the buffer it had to grow
+        scanner.restart(new StringReader("[\"a\", 1]"));
+        assertEquals(List.of("[", "\"a\"", ",", "1", "]"), scanner.stream().map(Scans.Scan::getValue).collect(Collectors.toList()));
+        
+        // and then a longer string, part way through a peek
+        scanner.restart("{\"longer\": true}");
+        assertEquals(Scans.ScanType.OPERATOR, scanner.peekScan());
+        scanner.restart("[2]");
+        assertEquals("[", scanner.getNextScan().getValue());
+        assertEquals(2, Integer.parseInt(scanner.getNextScan().getValue()));
+        assertEquals(1, scanner.getScanStart());
+        assertEquals("]", scanner.getNextScan().getValue());
+        assertEquals(Scans.ScanType.END, scanner.scan());
+    }
+    
     private static void testTokenList(List<Scans.Scan> tokens) {
         assertEquals(tokens.size(), 17);
         
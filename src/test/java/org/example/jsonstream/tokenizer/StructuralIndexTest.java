@@ -0,0 +1,89 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+class StructuralIndexTest {
+    
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static List<Integer> positions(StructuralIndex index) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) positions.add(index.get(i));
+        return positions;
+    }
+    
+    @Test
+    void StructuralIndex_Basic () {
+        StructuralIndex index = StructuralIndex.build(utf8("{\"a\" : [10, true, \"{,]\"], \"b\":null}"));
+        
+        // nothing inside of the "{,]" string is in there
+        assertEquals(
+            List.of(0, 1, 5, 7, 8, 10, 12, 16, 18, 23, 24, 26, 29, 30, 34),
+            positions(index)
+        );
+    }
+    
+    @Test
+    void StructuralIndex_EscapedQuotes () {
+        // which is ["a\",","\\"]
+        StructuralIndex index = StructuralIndex.build(utf8("[\"a\\\",\",\"\\\\\"]"));
+        
+        assertEquals(List.of(0, 1, 7, 8, 12), positions(index));
+    }
+    
+    // long enough that strings, escapes and numbers
+    // all end up spanning the 64 byte blocks
+    private static String document(String escapes) {
+        StringBuilder source = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) source.append(", ");
+            source.append("{\"key").append(i).append("\" : \"value ").append(escapes)
+                  .append("x".repeat(i % 70)).append("\", \"n\":").append(i * 12345)
+                  .append(", \"t\":true}");
+        }
+        return source.append("]").toString();
+    }
+    
+    @Test
+    void StructuralIndex_ScalarAndVectorAgree () {
+        String source = document("\\\\\\\" ");
+        
+        StructuralIndex.Classifier vector = StructuralIndex.vectorClassifier();
+        assumeTrue(vector != null, "built and run without the vector profile");
+        
+        StructuralIndex scalar = StructuralIndex.build(utf8(source), new StructuralIndex.ScalarClassifier());
+        StructuralIndex built  = StructuralIndex.build(utf8(source), vector);
+        
+        assertEquals(positions(scalar), positions(built));
+    }
+    
+    @Test
+    void StructuralIndex_DrivesTheTokenizer () {
+        String source = document("\\\\\\\" \\u00e9 ");
+        
+        Parser expected = new Parser();
+        new Tokenizer(new Scanner(source)).stream().forEach(expected::consumeToken);
+        
+        Parser indexed = new Parser();
+        new Tokenizer(ByteScanner.indexed(utf8(source))).stream().forEach(indexed::consumeToken);
+        
+        assertEquals(expected.getRoot().toJSON(), indexed.getRoot().toJSON());
+    }
+    
+    @Test
+    void StructuralIndex_VectorizedWhenAskedFor () {
+        // only with -Pvector, which both builds it and asks for it
+        boolean asked = Boolean.getBoolean(StructuralIndex.VECTOR_PROPERTY);
+        assertEquals(asked && StructuralIndex.vectorClassifier() != null, StructuralIndex.isVectorized());
+    }
+}
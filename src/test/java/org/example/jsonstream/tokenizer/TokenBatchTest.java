@@ -0,0 +1,180 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class TokenBatchTest {
+    
+    private final String SOURCE = "{\"foo\":[1, -2, 12345678901, -3.25, \"bar\"], \"baz\":{\"gorch\":[true, false, null]}, \"last\":10}";
+    private final String JSON   = "{\"foo\":[1,-2,12345678901,-3.25,\"bar\"],\"baz\":{\"gorch\":[true,false,null]},\"last\":10}";
+    
+    // only the TokenProducer, so we get the default produceTokens()
+    private static TokenProducer producerOf(Tokenizer tokenizer) {
+        return new TokenProducer() {
+            public Tokens.Token produceToken() { return tokenizer.produceToken(); }
+            public boolean isDone() { return tokenizer.isDone(); }
+            public Stream<Tokens.Token> stream() { return tokenizer.stream(); }
+        };
+    }
+    
+    private static List<Tokens.Token> drain(TokenProducer producer, TokenBatch batch) {
+        List<Tokens.Token> tokens = new ArrayList<>();
+        while (producer.produceTokens(batch) > 0) {
+            for (int i = 0; i < batch.size(); i++) tokens.add(batch.token(i));
+            if (batch.type(batch.size() - 1).isTerminal()) break;
+        }
+        return tokens;
+    }
+    
+    @Test
+    void TokenBatchTest_MatchesTheTokens () {
+        List<Tokens.Token> expected = new Tokenizer(new Scanner(SOURCE)).stream().collect(Collectors.toList());
+        
+        for (int capacity : new int[]{ 1, 3, 7, 1024 }) {
+            List<TokenProducer> producers = List.of(
+                new Tokenizer(new Scanner(SOURCE)),
+                producerOf(new Tokenizer(new Scanner(SOURCE))),
+                TokenTape.record(new Tokenizer(new Scanner(SOURCE)))
+            );
+            for (TokenProducer producer : producers) {
+                List<Tokens.Token> tokens = drain(producer, new TokenBatch(capacity));
+                
+                // with the NoToken at the end
+                assertEquals(expected.size() + 1, tokens.size());
+                assertEquals(Tokens.Type.NO_TOKEN, tokens.get(expected.size()).getType());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).toString(), tokens.get(i).toString());
+                    assertArrayEquals(expected.get(i).getContext(), tokens.get(i).getContext());
+                }
+            }
+        }
+    }
+    
+    @Test
+    void TokenBatchTest_Cursor () {
+        TokenBatch batch = new TokenBatch();
+        new Tokenizer(new Scanner("[7, 12345678901, 0.5, \"s\"]")).produceTokens(batch);
+        
+        assertEquals(Tokens.Type.START_ARRAY, batch.next());
+        assertEquals(2, batch.depth());
+        assertEquals(Tokens.Type.START_ITEM, batch.next());
+        assertEquals(Tokens.Type.ADD_INT, batch.next());
+        assertEquals(7, batch.intValue());
+        assertEquals(Tokenizer.Context.IN_ITEM, batch.currentContext());
+        assertThrows(IllegalStateException.class, batch::stringValue);
+        
+        // skip to the end of the item
+        batch.rewind();
+        batch.next();
+        batch.next();
+        batch.skipValue();
+        assertEquals(Tokens.Type.START_ITEM, batch.currentType());
+        assertEquals(Tokens.Type.END_ITEM, batch.next());
+        assertEquals(Tokens.Type.START_ITEM, batch.next());
+        assertEquals(Tokens.Type.ADD_LONG, batch.next());
+        assertEquals(12345678901L, batch.longValue());
+        batch.next();
+        batch.next();
+        assertEquals(Tokens.Type.ADD_DOUBLE, batch.next());
+        assertEquals(0.5, batch.doubleValue());
+        batch.next();
+        batch.next();
+        assertEquals(Tokens.Type.ADD_STRING, batch.next());
+        assertEquals("s", batch.stringValue());
+        
+        // it can't know where a value ends if that is in the next batch
+        TokenBatch small = new TokenBatch(6);
+        new Tokenizer(new Scanner("{\"a\":[1,2],\"b\":3}")).produceTokens(small);
+        small.next();
+        small.next();
+        assertEquals(Tokens.Type.ADD_KEY, small.next());
+        assertThrows(IllegalStateException.class, small::skipValue);
+        assertEquals(Tokens.Type.ADD_KEY, small.currentType());
+        assertEquals(Tokens.Type.START_ARRAY, small.next());
+        
+        // a value which is an error is skipped to the error, which is
+        // next, the same as from the Tokenizer
+        TokenBatch bad = new TokenBatch();
+        new Tokenizer(new Scanner("{\"a\": x}")).produceTokens(bad);
+        Tokenizer tokenizer = new Tokenizer(new Scanner("{\"a\": x}"));
+        for (int i = 0; i < 3; i++) assertEquals(tokenizer.next(), bad.next());
+        tokenizer.skipValue();
+        bad.skipValue();
+        assertEquals(Tokens.Type.ADD_KEY, bad.currentType());
+        assertEquals(Tokens.Type.ERROR_TOKEN, tokenizer.next());
+        assertEquals(Tokens.Type.ERROR_TOKEN, bad.next());
+        
+        // and so is one with an error somewhere inside of it
+        for (String source : List.of("{\"a\": [1, x]}", "[1, {\"b\": tru}]")) {
+            for (Tokens.Type skip : List.of(Tokens.Type.ADD_KEY, Tokens.Type.START_ITEM, Tokens.Type.START_OBJECT, Tokens.Type.START_ARRAY)) {
+                bad = new TokenBatch();
+                new Tokenizer(new Scanner(source)).produceTokens(bad);
+                Tokens.Type type;
+                boolean skipped = false;
+                while (!(type = bad.next()).isTerminal()) {
+                    if (type == skip && !skipped) {
+                        assertDoesNotThrow(bad::skipValue, source);
+                        skipped = true;
+                    }
+                }
+                assertEquals(Tokens.Type.ERROR_TOKEN, type, source);
+            }
+        }
+    }
+    
+    @Test
+    void TokenBatchTest_Parser () {
+        for (int capacity : new int[]{ 1, 5, 1024 }) {
+            Tokenizer tokenizer = new Tokenizer(new Scanner(SOURCE));
+            TokenBatch batch = new TokenBatch(capacity);
+            Parser parser = new Parser();
+            
+            while (!tokenizer.isDone()) {
+                tokenizer.produceTokens(batch);
+                parser.consumeBatch(batch);
+            }
+            assertEquals(JSON, parser.getRoot().toJSON());
+        }
+    }
+    
+    @Test
+    void TokenBatchTest_NeedMoreInput () {
+        FeedableScanner scanner = new FeedableScanner();
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        TokenBatch batch = new TokenBatch();
+        Parser parser = new Parser();
+        
+        scanner.feed(ByteBuffer.wrap("[1, {\"a\":".getBytes(StandardCharsets.UTF_8)));
+        tokenizer.produceTokens(batch);
+        assertEquals(Tokens.Type.NEED_MORE_INPUT, batch.type(batch.size() - 1));
+        parser.consumeBatch(batch);
+        
+        scanner.feed(ByteBuffer.wrap("true}]".getBytes(StandardCharsets.UTF_8)));
+        tokenizer.produceTokens(batch);
+        parser.consumeBatch(batch);
+        assertEquals("[1,{\"a\":true}]", parser.getRoot().toJSON());
+    }
+    
+    @Test
+    void TokenBatchTest_Full () {
+        TokenBatch batch = new TokenBatch(2);
+        batch.add(new Tokens.StartArray());
+        batch.add(new Tokens.EndArray());
+        
+        assertTrue(batch.isFull());
+        assertThrows(IllegalStateException.class, () -> batch.add(new Tokens.NoToken()));
+        
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.type(0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBatch(0));
+    }
+}
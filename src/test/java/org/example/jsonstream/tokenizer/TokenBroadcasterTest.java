@@ -0,0 +1,91 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+class TokenBroadcasterTest {
+    
+    private final String SOURCE = "{\"foo\":[1, -2, 12345678901, -3.25, \"bar\"], \"baz\":{\"gorch\":[true, false, null]}}";
+    
+    // counts the tokens, and has had enough after so many of them
+    private static class Counter extends Parser {
+        final int enough;
+        int count;
+        Counter(int enough) { this.enough = enough; }
+        public boolean isSatisfied() { return count >= enough; }
+        @Override
+        public void consumeBatch(TokenBatch batch) {
+            count += batch.size();
+            super.consumeBatch(batch);
+        }
+        @Override
+        public <T extends Tokens.Token> void consumeToken(T token) {
+            count++;
+            super.consumeToken(token);
+        }
+    }
+    
+    @Test
+    void TokenBroadcasterTest_Basic () {
+        int total = (int) new Tokenizer(new Scanner(SOURCE)).stream().count() + 1;
+        
+        Parser parser = new Parser();
+        Counter counter = new Counter(Integer.MAX_VALUE);
+        TokenBroadcaster broadcaster = new TokenBroadcaster(4).attach(parser).attach(counter);
+        
+        // tokenized once, and both of them get everything
+        assertEquals(Tokens.Type.NO_TOKEN, broadcaster.broadcast(new Tokenizer(new Scanner(SOURCE))));
+        assertEquals(new Parser() {{ parse(new Tokenizer(new Scanner(SOURCE))); }}.getRoot().toJSON(), parser.getRoot().toJSON());
+        assertEquals(total, counter.count);
+        assertEquals(List.of(parser, counter), broadcaster.getConsumers());
+    }
+    
+    @Test
+    void TokenBroadcasterTest_Detach () {
+        Counter early = new Counter(5);
+        Counter later = new Counter(10);
+        TokenBroadcaster broadcaster = new TokenBroadcaster(4).attach(early).attach(later);
+        
+        // once they have both had enough we stop
+        Tokenizer tokenizer = new Tokenizer(new Scanner(SOURCE));
+        assertNull(broadcaster.broadcast(tokenizer));
+        assertTrue(broadcaster.isSatisfied());
+        assertTrue(broadcaster.getConsumers().isEmpty());
+        assertFalse(tokenizer.isDone());
+        
+        // each of them got the batch they were satisfied in, and no more
+        assertEquals(8, early.count);
+        assertEquals(12, later.count);
+    }
+    
+    @Test
+    void TokenBroadcasterTest_OneAtATime () {
+        Parser parser = new Parser();
+        Counter early = new Counter(3);
+        TokenBroadcaster broadcaster = new TokenBroadcaster().attach(parser).attach(early);
+        
+        new Tokenizer(new Scanner(SOURCE)).drive(broadcaster);
+        assertEquals(3, early.count);
+        assertEquals(List.of(parser), broadcaster.getConsumers());
+        assertEquals("{\"foo\":[1,-2,12345678901,-3.25,\"bar\"],\"baz\":{\"gorch\":[true,false,null]}}", parser.getRoot().toJSON());
+    }
+    
+    @Test
+    void TokenBroadcasterTest_MoreInput () {
+        FeedableScanner scanner = new FeedableScanner();
+        Tokenizer tokenizer = new Tokenizer(scanner);
+        Parser parser = new Parser();
+        TokenBroadcaster broadcaster = new TokenBroadcaster().attach(parser);
+        
+        scanner.feed(java.nio.ByteBuffer.wrap("[1, 2".getBytes()));
+        assertEquals(Tokens.Type.NEED_MORE_INPUT, broadcaster.broadcast(tokenizer));
+        scanner.feed(java.nio.ByteBuffer.wrap(", 3]".getBytes()));
+        scanner.endOfInput();
+        assertEquals(Tokens.Type.NO_TOKEN, broadcaster.broadcast(tokenizer));
+        assertEquals("[1,2,3]", parser.getRoot().toJSON());
+    }
+}
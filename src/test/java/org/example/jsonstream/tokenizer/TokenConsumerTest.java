@@ -2,6 +2,8 @@ package org.example.jsonstream.tokenizer;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.*;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TokenConsumerTest {
@@ -64,4 +66,23 @@ class TokenConsumerTest {
         assertEquals(5, o.getCount());
         assertEquals(5, o2.getCount());
     }
+    
+    @Test
+    void consumeToken_OlderConsumer() {
+        // only has the tokens there were to begin with, so the newer
+        // numbers come as floats, and the rest are left out
+        List<String> floats = new ArrayList<>();
+        BasicConsumer older = new BasicConsumer() {
+            public void consumeToken(Tokens.AddFloat token) {
+                count++;
+                assertEquals(3, token.getContextDepth());
+                floats.add(token.getValue().toString());
+            }
+        };
+        new Tokenizer(new Scanner("[12345678901]\n[2.5]\n[1e400]")).withMultipleDocuments().withBigNumbers().stream()
+            .forEach(older::consumeToken);
+        
+        assertEquals(List.of("1.23456788E10", "2.5", "Infinity"), floats);
+        assertEquals(15, older.getCount());
+    }
 }
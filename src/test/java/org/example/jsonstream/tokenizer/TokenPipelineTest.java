@@ -0,0 +1,154 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class TokenPipelineTest {
+    
+    private static String source(int items) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i)
+              .append(",\"name\":\"item ").append(i)
+              .append("\",\"tags\":[1.5,true,null,{\"deep\":[").append(i).append("]}]}");
+        }
+        return sb.append(']').toString();
+    }
+    
+    @Test
+    void TokenPipelineTest_DrainTo () {
+        String source = source(500);
+        
+        // lots of small slots, so it goes round the ring many times
+        for (TokenPipeline.WaitStrategy wait : TokenPipeline.WaitStrategy.values()) {
+            Parser parser = new Parser();
+            new TokenPipeline(new Tokenizer(new Scanner(source)), 4, 16, wait).drainTo(parser);
+            assertEquals(source, parser.getRoot().toJSON(), wait.name());
+        }
+    }
+    
+    @Test
+    void TokenPipelineTest_Stream () {
+        String source = source(100);
+        List<String> expected = new Tokenizer(new Scanner(source)).stream()
+                                    .map(Tokens.Token::toString)
+                                    .collect(Collectors.toList());
+        
+        TokenPipeline pipeline = new TokenPipeline(new Tokenizer(new Scanner(source)), 3, 7, TokenPipeline.WaitStrategy.YIELD);
+        List<String> got = pipeline.stream()
+                               .map(Tokens.Token::toString)
+                               .collect(Collectors.toList());
+        assertEquals(expected, got);
+        assertTrue(pipeline.isDone());
+        assertEquals(Tokens.Type.NO_TOKEN, pipeline.next());
+    }
+    
+    @Test
+    void TokenPipelineTest_SkipValue () {
+        String source = source(100);
+        
+        // skip every other item, and the tags of the rest
+        Tokenizer tokenizer = new Tokenizer(new Scanner(source));
+        TokenPipeline pipeline = new TokenPipeline(new Tokenizer(new Scanner(source)), 4, 5, TokenPipeline.WaitStrategy.YIELD).start();
+        int items = 0;
+        while (true) {
+            Tokens.Type type = tokenizer.next();
+            assertEquals(type, pipeline.next());
+            if (type.isTerminal()) break;
+            
+            assertEquals(tokenizer.depth(), pipeline.depth());
+            if (type == Tokens.Type.START_ITEM && tokenizer.depth() == 3 && items++ % 2 == 0
+                || type == Tokens.Type.ADD_KEY && "tags".equals(tokenizer.currentKey())) {
+                tokenizer.skipValue();
+                pipeline.skipValue();
+            }
+        }
+        assertEquals(100, items);
+    }
+    
+    @Test
+    void TokenPipelineTest_Errors () {
+        // an ErrorToken is passed on, and that is the end
+        TokenPipeline pipeline = new TokenPipeline(new Tokenizer(new Scanner("[1 2]")));
+        Tokens.Type type;
+        while (!(type = pipeline.next()).isTerminal()) {}
+        assertEquals(Tokens.Type.ERROR_TOKEN, type);
+        assertNotNull(pipeline.errorMessage());
+        assertEquals(Tokens.Type.NO_TOKEN, pipeline.next());
+        
+        // unless the tokenizer can recover from it
+        Tokenizer recovering = new Tokenizer(new Scanner("[1 2]\n[3]\n")).withMultipleDocuments().withRecovery();
+        Parser parser = new Parser();
+        new TokenPipeline(recovering, 2, 4, TokenPipeline.WaitStrategy.YIELD).drainTo(parser);
+        assertEquals("[3]", parser.getRoot().toJSON());
+        
+        // and anything thrown is thrown again on this side
+        TokenProducer failing = new TokenProducer() {
+            final Tokenizer tokenizer = new Tokenizer(new Scanner(source(100)));
+            int count;
+            public Tokens.Token produceToken() {
+                if (++count > 1000) throw new IllegalStateException("too many");
+                return tokenizer.produceToken();
+            }
+            public boolean isDone() { return tokenizer.isDone(); }
+            public Stream<Tokens.Token> stream() { return tokenizer.stream(); }
+        };
+        TokenPipeline failed = new TokenPipeline(failing, 2, 64, TokenPipeline.WaitStrategy.PARK);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> failed.drainTo(new Parser()));
+        assertEquals("too many", e.getMessage());
+    }
+    
+    @Test
+    void TokenPipelineTest_FedInput () {
+        // fed all of it up front, it is like any other input
+        FeedableScanner all = new FeedableScanner();
+        all.feed(ByteBuffer.wrap("[1, {\"a\": true}]".getBytes(StandardCharsets.UTF_8)));
+        all.endOfInput();
+        Parser parser = new Parser();
+        new TokenPipeline(new Tokenizer(all)).drainTo(parser);
+        assertEquals("[1,{\"a\":true}]", parser.getRoot().toJSON());
+        
+        // but it can't be fed as it goes, so running out is an error
+        FeedableScanner part = new FeedableScanner();
+        part.feed(ByteBuffer.wrap("[1, {\"a\":".getBytes(StandardCharsets.UTF_8)));
+        TokenPipeline pipeline = new TokenPipeline(new Tokenizer(part), 2, 4, TokenPipeline.WaitStrategy.PARK);
+        assertEquals(Tokens.Type.START_ARRAY, pipeline.next());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+            while (!pipeline.next().isTerminal()) {}
+        });
+        assertTrue(e.getMessage().contains("ran out of input"), e.getMessage());
+    }
+    
+    @Test
+    void TokenPipelineTest_Close () throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TokenPipeline pipeline = new TokenPipeline(new Tokenizer(new Scanner(source(10000))), 2, 16, TokenPipeline.WaitStrategy.PARK);
+            pipeline.start(executor);
+            assertThrows(IllegalStateException.class, pipeline::start);
+            
+            assertEquals(Tokens.Type.START_ARRAY, pipeline.next());
+            pipeline.close();
+            assertEquals(Tokens.Type.NO_TOKEN, pipeline.next());
+            assertEquals(Tokens.Type.NO_TOKEN, pipeline.currentType());
+            
+            // and the producing side stops too
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
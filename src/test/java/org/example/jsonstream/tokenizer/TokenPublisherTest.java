@@ -0,0 +1,110 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+
+class TokenPublisherTest {
+    
+    private final String SOURCE = "{\"foo\":[1, -2, 12345678901, -3.25, \"bar\"], \"baz\":{\"gorch\":[true, false, null]}}";
+    
+    // asks for nothing on its own, and writes down what it gets
+    private static class ManualSubscriber implements Flow.Subscriber<Tokens.Token> {
+        Flow.Subscription subscription;
+        final List<String> tokens = new ArrayList<>();
+        Throwable error;
+        boolean complete;
+        
+        public void onSubscribe(Flow.Subscription s) { subscription = s; }
+        public void onNext(Tokens.Token token) { tokens.add(token.toString()); }
+        public void onError(Throwable t) { error = t; }
+        public void onComplete() { complete = true; }
+    }
+    
+    @Test
+    void TokenPublisherTest_OnlyWhatIsRequested () {
+        List<String> expected = new Tokenizer(new Scanner(SOURCE)).stream()
+                                    .map(Tokens.Token::toString)
+                                    .collect(Collectors.toList());
+        
+        // small batches, and everything on this thread
+        TokenPublisher publisher = new TokenPublisher(new Tokenizer(new Scanner(SOURCE)), Runnable::run, 4);
+        ManualSubscriber subscriber = new ManualSubscriber();
+        publisher.subscribe(subscriber);
+        assertTrue(subscriber.tokens.isEmpty());
+        
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.tokens.size());
+        subscriber.subscription.request(5);
+        assertEquals(6, subscriber.tokens.size());
+        
+        while (!subscriber.complete) {
+            int before = subscriber.tokens.size();
+            subscriber.subscription.request(1);
+            assertTrue(subscriber.tokens.size() - before <= 1);
+        }
+        assertEquals(expected, subscriber.tokens);
+        assertNull(subscriber.error);
+    }
+    
+    @Test
+    void TokenPublisherTest_Errors () {
+        // the ErrorToken is passed on, and then it is complete
+        ManualSubscriber subscriber = new ManualSubscriber();
+        new TokenPublisher(new Tokenizer(new Scanner("[1 2]")), Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.tokens.get(subscriber.tokens.size() - 1).startsWith("ErrorToken["));
+        assertTrue(subscriber.complete);
+        
+        // asking for nothing is not allowed
+        subscriber = new ManualSubscriber();
+        new TokenPublisher(new Tokenizer(new Scanner(SOURCE)), Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+        
+        // and there is only one subscriber
+        TokenPublisher publisher = new TokenPublisher(new Tokenizer(new Scanner(SOURCE)), Runnable::run);
+        publisher.subscribe(new ManualSubscriber());
+        subscriber = new ManualSubscriber();
+        publisher.subscribe(subscriber);
+        assertNotNull(subscriber.subscription);
+        assertInstanceOf(IllegalStateException.class, subscriber.error);
+    }
+    
+    @Test
+    void TokenPublisherTest_Cancel () {
+        ManualSubscriber subscriber = new ManualSubscriber();
+        new TokenPublisher(new Tokenizer(new Scanner(SOURCE)), Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(3);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(3);
+        
+        assertEquals(3, subscriber.tokens.size());
+        assertFalse(subscriber.complete);
+    }
+    
+    @Test
+    void TokenPublisherTest_Resume () {
+        FeedableScanner scanner = new FeedableScanner();
+        TokenPublisher publisher = new TokenPublisher(new Tokenizer(scanner), Runnable::run);
+        ManualSubscriber subscriber = new ManualSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        
+        scanner.feed(ByteBuffer.wrap("[1, tr".getBytes(StandardCharsets.UTF_8)));
+        publisher.resume();
+        assertEquals(List.of("StartArray", "StartItem", "AddInt[1]", "EndItem"), subscriber.tokens);
+        
+        scanner.feed(ByteBuffer.wrap("ue]".getBytes(StandardCharsets.UTF_8)));
+        scanner.endOfInput();
+        publisher.resume();
+        assertEquals(List.of("StartArray", "StartItem", "AddInt[1]", "EndItem", "StartItem", "AddTrue", "EndItem", "EndArray"), subscriber.tokens);
+        assertTrue(subscriber.complete);
+    }
+}
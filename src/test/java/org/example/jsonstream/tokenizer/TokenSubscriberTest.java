@@ -0,0 +1,140 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+class TokenSubscriberTest {
+    
+    private static String source(int items) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i).append(",\"ok\":true}");
+        }
+        return sb.append(']').toString();
+    }
+    
+    @Test
+    void TokenSubscriberTest_AcrossExecutors () throws Exception {
+        String source = source(1000);
+        
+        ExecutorService producing = Executors.newSingleThreadExecutor();
+        ExecutorService consuming = Executors.newSingleThreadExecutor();
+        try {
+            Parser parser = new Parser();
+            TokenSubscriber subscriber = new TokenSubscriber(parser, consuming, 64);
+            new TokenPublisher(new Tokenizer(new Scanner(source)), producing, 16).subscribe(subscriber);
+            
+            subscriber.completion().get(10, TimeUnit.SECONDS);
+            assertEquals(source, parser.getRoot().toJSON());
+        } finally {
+            producing.shutdown();
+            consuming.shutdown();
+        }
+    }
+    
+    // full after every so many tokens, until it is emptied
+    private static class SlowConsumer extends Parser {
+        int size;
+        public boolean isFull() { return size >= 100; }
+        @Override
+        public <T extends Tokens.Token> void consumeToken(T token) {
+            size++;
+            super.consumeToken(token);
+        }
+    }
+    
+    @Test
+    void TokenSubscriberTest_WaitsWhileFull () {
+        String source = source(100);
+        
+        SlowConsumer consumer = new SlowConsumer();
+        TokenSubscriber subscriber = new TokenSubscriber(consumer, Runnable::run, 10);
+        
+        // count what is asked for
+        long[] requested = { 0 };
+        TokenPublisher publisher = new TokenPublisher(new Tokenizer(new Scanner(source)), Runnable::run);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            public void onSubscribe(Flow.Subscription s) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    public void request(long n) {
+                        requested[0] += n;
+                        s.request(n);
+                    }
+                    public void cancel() { s.cancel(); }
+                });
+            }
+            public void onNext(Tokens.Token token) { subscriber.onNext(token); }
+            public void onError(Throwable t) { subscriber.onError(t); }
+            public void onComplete() { subscriber.onComplete(); }
+        });
+        
+        while (!subscriber.completion().isDone()) {
+            // it stops asking once it is full, but what was
+            // already asked for still arrives
+            assertTrue(consumer.size >= 100 && consumer.size <= 110, "consumed " + consumer.size);
+            
+            consumer.size = 0;
+            subscriber.resume();
+            assertTrue(consumer.size > 0 || subscriber.completion().isDone());
+        }
+        assertEquals(source, consumer.getRoot().toJSON());
+    }
+    
+    @Test
+    void TokenSubscriberTest_CompletesRightAfterTheLastToken () throws Exception {
+        String source = "[1,{\"a\":[true]}]";
+        List<Tokens.Token> tokens = new ArrayList<>();
+        new Tokenizer(new Scanner(source)).stream().forEach(tokens::add);
+        
+        // the last token and the completion arrive from another thread,
+        // right as the consumer finds nothing left to do
+        ExecutorService producing = Executors.newSingleThreadExecutor();
+        ExecutorService consuming = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                Parser parser = new Parser();
+                TokenSubscriber subscriber = new TokenSubscriber(parser, consuming, 4);
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    public void request(long n) {}
+                    public void cancel() {}
+                });
+                producing.submit(() -> {
+                    for (Tokens.Token token : tokens) {
+                        subscriber.onNext(token);
+                        Thread.yield();
+                    }
+                    subscriber.onComplete();
+                });
+                subscriber.completion().get(10, TimeUnit.SECONDS);
+                assertNotNull(parser.getRoot(), "lost a token on run " + i);
+                assertEquals(source, parser.getRoot().toJSON());
+            }
+        } finally {
+            producing.shutdown();
+            consuming.shutdown();
+        }
+    }
+    
+    @Test
+    void TokenSubscriberTest_ConsumerThrows () {
+        TokenSubscriber subscriber = new TokenSubscriber(new Parser() {
+            @Override
+            public <T extends Tokens.Token> void consumeToken(T token) {
+                if (token.getType() == Tokens.Type.ADD_INT) throw new IllegalStateException("no ints please");
+                super.consumeToken(token);
+            }
+        });
+        new TokenPublisher(new Tokenizer(new Scanner("{\"a\":1}")), Runnable::run).subscribe(subscriber);
+        
+        assertTrue(subscriber.completion().isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.jsonstream.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.example.jsonstream.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+class TokenTapeTest {
+    
+    private final String SOURCE = "{\"foo\":[1, -2, 12345678901, -3.25, \"bar\"], \"baz\":{\"gorch\":[true, false, null]}, \"last\":10}";
+    
+    @Test
+    void TokenTapeTest_ReplaysTheTokenizer () {
+        List<Tokens.Token> expected = new Tokenizer(new Scanner(SOURCE)).stream().collect(Collectors.toList());
+        TokenTape tape = TokenTape.record(new Tokenizer(new Scanner(SOURCE)));
+        
+        assertEquals(expected.size(), tape.size());
+        
+        // more than once
+        for (int run = 0; run < 2; run++) {
+            tape.rewind();
+            List<Tokens.Token> replayed = tape.stream().collect(Collectors.toList());
+            
+            assertEquals(expected.toString(), replayed.toString());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i).getContext(), replayed.get(i).getContext());
+            }
+            assertTrue(tape.isDone());
+            assertEquals(Tokens.Type.NO_TOKEN, tape.next());
+        }
+    }
+    
+    @Test
+    void TokenTapeTest_FromTokens () {
+        List<Tokens.Token> tokens = new Tokenizer(new Scanner(SOURCE)).stream().collect(Collectors.toList());
+        
+        Parser parser = new Parser();
+        TokenProducer.tapeOf(tokens).stream().forEach(parser::consumeToken);
+        
+        assertEquals(
+            "{\"foo\":[1,-2,12345678901,-3.25,\"bar\"],\"baz\":{\"gorch\":[true,false,null]},\"last\":10}",
+            parser.getRoot().toJSON()
+        );
+        
+        // whereas of() is the list itself, terminals and all
+        List<Tokens.Token> listed = new ArrayList<>(tokens);
+        listed.add(new Tokens.NeedMoreInput());
+        TokenProducer producer = TokenProducer.of(listed);
+        for (Tokens.Token token : listed) assertSame(token, producer.produceToken());
+        assertThrows(IllegalArgumentException.class, () -> TokenProducer.tapeOf(listed));
+    }
+    
+    @Test
+    void TokenTapeTest_Values () {
+        TokenTape tape = TokenTape.record(new Tokenizer(new Scanner("[-7, 12345678901, 0.5, 1e400, \"s\"]")).withBigNumbers());
+        
+        assertEquals(Tokens.Type.START_ARRAY, tape.next());
+        assertEquals(Tokens.Type.START_ITEM, tape.next());
+        assertEquals(Tokens.Type.ADD_INT, tape.next());
+        assertEquals(-7, tape.intValue());
+        assertEquals(-7L, tape.longValue());
+        assertThrows(IllegalStateException.class, tape::stringValue);
+        assertEquals(Tokens.Type.END_ITEM, tape.next());
+        assertEquals(Tokens.Type.START_ITEM, tape.next());
+        assertEquals(Tokens.Type.ADD_LONG, tape.next());
+        assertEquals(12345678901L, tape.longValue());
+        assertThrows(IllegalStateException.class, tape::intValue);
+        assertEquals(Tokens.Type.END_ITEM, tape.next());
+        assertEquals(Tokens.Type.START_ITEM, tape.next());
+        assertEquals(Tokens.Type.ADD_BIG_NUMBER, tape.next());
+        assertEquals(new BigDecimal("0.5"), tape.bigNumberValue());
+        assertEquals(0.5, tape.doubleValue());
+        assertEquals(Tokens.Type.END_ITEM, tape.next());
+        assertEquals(Tokens.Type.START_ITEM, tape.next());
+        assertEquals(Tokens.Type.ADD_BIG_NUMBER, tape.next());
+        assertEquals(new BigDecimal("1e400"), tape.bigNumberValue());
+        assertEquals(Tokens.Type.END_ITEM, tape.next());
+        assertEquals(Tokens.Type.START_ITEM, tape.next());
+        assertEquals(Tokens.Type.ADD_STRING, tape.next());
+        assertEquals("s", tape.stringValue());
+    }
+    
+    @Test
+    void TokenTapeTest_SkipContainer () {
+        TokenTape tape = TokenTape.record(new Tokenizer(new Scanner(SOURCE)));
+        
+        assertEquals(Tokens.Type.START_OBJECT, tape.next());
+        assertEquals(Tokens.Type.START_PROPERTY, tape.next());
+        assertEquals(Tokens.Type.ADD_KEY, tape.next());
+        assertEquals("foo", tape.currentKey());
+        assertEquals(Tokens.Type.START_ARRAY, tape.next());
+        assertEquals(4, tape.depth());
+        
+        tape.skipContainer();
+        assertEquals(Tokens.Type.END_ARRAY, tape.currentType());
+        assertEquals(3, tape.depth());
+        assertEquals(Tokenizer.Context.IN_PROPERTY, tape.currentContext());
+        
+        assertEquals(Tokens.Type.END_PROPERTY, tape.next());
+        assertEquals(Tokens.Type.START_PROPERTY, tape.next());
+        
+        // a whole property
+        tape.skipContainer();
+        assertEquals(Tokens.Type.END_PROPERTY, tape.currentType());
+        assertEquals(Tokens.Type.START_PROPERTY, tape.next());
+        assertEquals(Tokens.Type.ADD_KEY, tape.next());
+        assertEquals("last", tape.currentKey());
+        
+        // anything else stays where it is
+        int position = tape.position();
+        tape.skipContainer();
+        assertEquals(position, tape.position());
+    }
+    
+    @Test
+    void TokenTapeTest_SkipValue () {
+        List<Tokens.Type> expected = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer(new Scanner(SOURCE));
+        TokenTape tape = TokenTape.record(new Tokenizer(new Scanner(SOURCE)));
+        
+        // skip the same things on both and they agree
+        Tokens.Type type;
+        while (!(type = tokenizer.next()).isTerminal()) {
+            assertEquals(type, tape.next());
+            assertEquals(tokenizer.depth(), tape.depth());
+            if (type == Tokens.Type.START_ITEM || (type == Tokens.Type.ADD_KEY && !tokenizer.currentKey().equals("baz"))
+                    || (type == Tokens.Type.START_OBJECT && tokenizer.depth() > 3)) {
+                tokenizer.skipValue();
+                tape.skipValue();
+                // it is still on the same token until the next one
+                assertEquals(type, tape.currentType());
+                assertEquals(tokenizer.currentKey(), tape.currentKey());
+            }
+            expected.add(type);
+        }
+        assertEquals(Tokens.Type.NO_TOKEN, tape.next());
+        assertTrue(expected.contains(Tokens.Type.END_OBJECT));
+    }
+    
+    @Test
+    void TokenTapeTest_SkipUnclosedValue () {
+        // values which are never closed end in the error, for both
+        for (String source : List.of("{\"a\":[1,2", "[1,[2,3", "[[1,{\"b\":")) {
+            for (Tokens.Type skip : List.of(Tokens.Type.ADD_KEY, Tokens.Type.START_ITEM, Tokens.Type.START_ARRAY)) {
+                Tokenizer tokenizer = new Tokenizer(new Scanner(source));
+                TokenTape tape = TokenTape.record(new Tokenizer(new Scanner(source)));
+                
+                boolean skipped = false;
+                Tokens.Type type;
+                do {
+                    type = tokenizer.next();
+                    assertEquals(type, tape.next(), source);
+                    assertEquals(tokenizer.depth(), tape.depth(), source);
+                    assertEquals(tokenizer.currentContext(), tape.currentContext(), source);
+                    // one which is never closed, so it runs on to the error
+                    if (type == skip && !skipped && tape.position() > 2) {
+                        tokenizer.skipValue();
+                        tape.skipValue();
+                        skipped = true;
+                    }
+                } while (!type.isTerminal());
+                assertEquals(Tokens.Type.ERROR_TOKEN, type, source);
+            }
+        }
+    }
+    
+    @Test
+    void TokenTapeTest_Seek () {
+        List<Tokens.Token> expected = new Tokenizer(new Scanner(SOURCE)).stream().collect(Collectors.toList());
+        TokenTape tape = TokenTape.record(new Tokenizer(new Scanner(SOURCE)));
+        
+        // backwards, so every one is a real seek
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            tape.seek(i);
+            Tokens.Token token = tape.currentToken();
+            assertEquals(expected.get(i).toString(), token.toString());
+            assertArrayEquals(expected.get(i).getContext(), token.getContext());
+        }
+        
+        // and carry on from there
+        tape.seek(3);
+        assertEquals(expected.get(4).toString(), tape.produceToken().toString());
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> tape.seek(expected.size()));
+    }
+    
+    @Test
+    void TokenTapeTest_Error () {
+        TokenTape tape = TokenTape.record(new Tokenizer(new Scanner("[1, }")));
+        
+        List<Tokens.Type> types = new ArrayList<>();
+        while (!tape.next().isTerminal()) types.add(tape.currentType());
+        
+        assertEquals(List.of(Tokens.Type.START_ARRAY, Tokens.Type.START_ITEM, Tokens.Type.ADD_INT, Tokens.Type.END_ITEM, Tokens.Type.START_ITEM), types);
+        assertEquals(Tokens.Type.ERROR_TOKEN, tape.currentType());
+        assertNotNull(tape.errorMessage());
+        assertEquals(Tokenizer.Context.IN_ERROR, tape.currentContext());
+    }
+}
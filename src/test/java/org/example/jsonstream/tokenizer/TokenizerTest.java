@@ -1,7 +1,12 @@
 package org.example.jsonstream.tokenizer;
 
+import org.example.jsonstream.parser.Parser;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.example.jsonstream.tokenizer.Tokens.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -108,12 +113,317 @@ class TokenizerTest {
                 checkAddIntToken(t, 10);
             checkNextToken(t, EndItem.class);
             checkNextToken(t, StartItem.class);
-                checkAddFloatToken(t, 3.14F);
+                checkAddDoubleToken(t, 3.14);
             checkNextToken(t, EndItem.class);
             checkNextToken(t, StartItem.class);
                 checkAddStringToken(t, "foo");
             checkNextToken(t, EndItem.class);
         checkNextToken(t, EndArray.class);
+        
+        checkNextToken(t, NoToken.class);
+        assertTrue(t.isInEndState());
+    }
+    
+    @Test
+    void produceToken_Context() {
+        Tokenizer t = new Tokenizer(new Scanner("[[{\"a\":[1]}]]"));
+        
+        List<Token> tokens = new ArrayList<>();
+        t.stream().forEach(tokens::add);
+        
+        // the AddInt[1]
+        Token deepest = tokens.get(9);
+        assertInstanceOf(AddInt.class, deepest);
+        assertEquals(9, deepest.getContextDepth());
+        assertEquals(Tokenizer.Context.IN_ITEM, deepest.getCurrentContext());
+        assertArrayEquals(
+            new Tokenizer.Context[]{
+                Tokenizer.Context.IN_ROOT,
+                Tokenizer.Context.IN_ARRAY, Tokenizer.Context.IN_ITEM,
+                Tokenizer.Context.IN_ARRAY, Tokenizer.Context.IN_ITEM,
+                Tokenizer.Context.IN_OBJECT, Tokenizer.Context.IN_PROPERTY,
+                Tokenizer.Context.IN_ARRAY, Tokenizer.Context.IN_ITEM
+            },
+            deepest.getContext()
+        );
+        
+        // and everything is back at the root at the end
+        Token last = tokens.get(tokens.size() - 1);
+        assertInstanceOf(EndArray.class, last);
+        assertEquals(1, last.getContextDepth());
+        assertEquals(Tokenizer.Context.IN_ROOT, last.getCurrentContext());
+    }
+    
+    @Test
+    void next_CursorMatchesTokens() {
+        String source = "{\"a\":[1, 12345678901, -2.5, \"s\", true, false, null], \"b\":{}}";
+        
+        List<Token> tokens = new ArrayList<>();
+        new Tokenizer(new Scanner(source)).stream().forEach(tokens::add);
+        
+        Tokenizer cursor = new Tokenizer(new Scanner(source));
+        for (Token token : tokens) {
+            assertEquals(token.getType(), cursor.next());
+            assertEquals(token.getContextDepth(), cursor.depth());
+            assertEquals(token.getCurrentContext(), cursor.currentContext());
+            assertEquals(token.toString(), cursor.currentToken().toString());
+        }
+        assertEquals(Type.NO_TOKEN, cursor.next());
+    }
+    
+    @Test
+    void next_CursorValues() {
+        Tokenizer cursor = new Tokenizer(new Scanner("{\"key\":[7, 12345678901, 0.5, \"s\\n\"]}"));
+        
+        assertEquals(Type.START_OBJECT, cursor.next());
+        assertEquals(Type.START_PROPERTY, cursor.next());
+        assertEquals(Type.ADD_KEY, cursor.next());
+        assertEquals("key", cursor.currentKey());
+        assertEquals(Type.START_ARRAY, cursor.next());
+        assertNull(cursor.currentKey());
+        assertThrows(IllegalStateException.class, cursor::stringValue);
+        
+        assertEquals(Type.START_ITEM, cursor.next());
+        assertEquals(Type.ADD_INT, cursor.next());
+        assertEquals(7, cursor.intValue());
+        assertEquals(7L, cursor.longValue());
+        assertEquals(Type.END_ITEM, cursor.next());
+        assertEquals(Type.START_ITEM, cursor.next());
+        assertEquals(Type.ADD_LONG, cursor.next());
+        assertEquals(12345678901L, cursor.longValue());
+        assertThrows(IllegalStateException.class, cursor::intValue);
+        assertEquals(Type.END_ITEM, cursor.next());
+        assertEquals(Type.START_ITEM, cursor.next());
+        assertEquals(Type.ADD_DOUBLE, cursor.next());
+        assertEquals(0.5, cursor.doubleValue());
+        assertEquals(new BigDecimal("0.5"), cursor.bigNumberValue());
+        assertEquals(Type.END_ITEM, cursor.next());
+        assertEquals(Type.START_ITEM, cursor.next());
+        assertEquals(Type.ADD_STRING, cursor.next());
+        assertEquals("s\n", cursor.stringValue());
+    }
+    
+    @Test
+    void skipValue() {
+        String source = "{\"a\":{\"b\":[1,2]}, \"c\":[{\"d\":\"}\"}, 3], \"e\":10}";
+        
+        Tokenizer tokenizer = new Tokenizer(new Scanner(source));
+        assertEquals(Type.START_OBJECT, tokenizer.next());
+        assertEquals(Type.START_PROPERTY, tokenizer.next());
+        assertEquals(Type.ADD_KEY, tokenizer.next());
+        
+        // the value of a key
+        tokenizer.skipValue();
+        assertEquals(Type.END_PROPERTY, tokenizer.next());
+        assertEquals(2, tokenizer.depth());
+        
+        assertEquals(Type.START_PROPERTY, tokenizer.next());
+        assertEquals(Type.ADD_KEY, tokenizer.next());
+        assertEquals(Type.START_ARRAY, tokenizer.next());
+        assertEquals(Type.START_ITEM, tokenizer.next());
+        
+        // the value of an item
+        tokenizer.skipValue();
+        assertEquals(Type.END_ITEM, tokenizer.next());
+        assertEquals(Type.START_ITEM, tokenizer.next());
+        assertEquals(Type.ADD_INT, tokenizer.next());
+        assertEquals(3, tokenizer.intValue());
+        assertEquals(Type.END_ITEM, tokenizer.next());
+        assertEquals(Type.END_ARRAY, tokenizer.next());
+        assertEquals(Type.END_PROPERTY, tokenizer.next());
+        
+        assertEquals(Type.START_PROPERTY, tokenizer.next());
+        assertEquals(Type.ADD_KEY, tokenizer.next());
+        assertEquals("e", tokenizer.currentKey());
+        assertEquals(Type.ADD_INT, tokenizer.next());
+        assertEquals(Type.END_PROPERTY, tokenizer.next());
+        assertEquals(Type.END_OBJECT, tokenizer.next());
+        assertEquals(Type.NO_TOKEN, tokenizer.next());
+        
+        // the rest of a container
+        tokenizer = new Tokenizer(new Scanner(source));
+        assertEquals(Type.START_OBJECT, tokenizer.next());
+        tokenizer.skipValue();
+        assertEquals(Type.END_OBJECT, tokenizer.next());
+        assertEquals(1, tokenizer.depth());
+        assertEquals(Type.NO_TOKEN, tokenizer.next());
+        
+        // and errors come out as usual, though only running out of
+        // input is one, the brackets in it are not checked
+        tokenizer = new Tokenizer(new Scanner("{\"a\" : [1, 2"));
+        tokenizer.next();
+        tokenizer.next();
+        tokenizer.next();
+        tokenizer.skipValue();
+        assertEquals(Type.ERROR_TOKEN, tokenizer.next());
+    }
+    
+    // writes down each call, in the same form as the tokens
+    private static class RecordingHandler implements TokenHandler {
+        final List<String> calls = new ArrayList<>();
+        
+        public void startObject() { calls.add("StartObject"); }
+        public void endObject() { calls.add("EndObject"); }
+        public void startProperty() { calls.add("StartProperty"); }
+        public void endProperty() { calls.add("EndProperty"); }
+        public void addKey(String key) { calls.add("AddKey[" + key + "]"); }
+        public void startArray() { calls.add("StartArray"); }
+        public void endArray() { calls.add("EndArray"); }
+        public void startItem() { calls.add("StartItem"); }
+        public void endItem() { calls.add("EndItem"); }
+        public void addString(String value) { calls.add("AddString[" + value + "]"); }
+        public void addInt(int value) { calls.add("AddInt[" + value + "]"); }
+        public void addLong(long value) { calls.add("AddLong[" + value + "]"); }
+        public void addDouble(double value) { calls.add("AddDouble[" + value + "]"); }
+        public void addBigNumber(BigDecimal value) { calls.add("AddBigNumber[" + value + "]"); }
+        public void addTrue() { calls.add("AddTrue"); }
+        public void addFalse() { calls.add("AddFalse"); }
+        public void addNull() { calls.add("AddNull"); }
+        public void endDocument() { calls.add("EndDocument"); }
+        public void error(String msg) { calls.add("ErrorToken[" + msg + "]"); }
+    }
+    
+    @Test
+    void drive_Handler() {
+        String source = "{\"a\":[1, 12345678901, -2.5, \"s\\t\", true, false, null], \"b\":{}} [] [1e400]";
+        
+        for (boolean bigNumbers : new boolean[]{ false, true }) {
+            Tokenizer expected = new Tokenizer(new Scanner(source)).withMultipleDocuments();
+            Tokenizer driven = new Tokenizer(new Scanner(source)).withMultipleDocuments();
+            if (bigNumbers) {
+                expected.withBigNumbers();
+                driven.withBigNumbers();
+            }
+            
+            RecordingHandler handler = new RecordingHandler();
+            assertEquals(Type.NO_TOKEN, driven.drive(handler));
+            assertEquals(expected.stream().map(Token::toString).toList(), handler.calls);
+        }
+        
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(Type.ERROR_TOKEN, new Tokenizer(new Scanner("[1 2]")).drive(handler));
+        assertTrue(handler.calls.get(handler.calls.size() - 1).startsWith("ErrorToken["));
+        
+        // and a handler only has to have what it needs
+        List<String> keys = new ArrayList<>();
+        new Tokenizer(new Scanner(source)).drive(new TokenHandler() {
+            public void addKey(String key) { keys.add(key); }
+        });
+        assertEquals(List.of("a", "b"), keys);
+    }
+    
+    @Test
+    void drive_Consumer() {
+        String source = "{\"a\":[1, 12345678901, -2.5, \"s\"], \"b\":{}}";
+        
+        List<Token> expected = new Tokenizer(new Scanner(source)).stream().toList();
+        List<Token> consumed = new ArrayList<>();
+        assertEquals(Type.NO_TOKEN, new Tokenizer(new Scanner(source)).drive(new TokenConsumerTest.BasicConsumer() {
+            @Override
+            public <T extends Token> void consumeToken(T token) { fail("should not be called"); }
+            public void consumeToken(NoToken token) { consumed.add(token); }
+            public void consumeToken(StartObject token) { consumed.add(token); }
+            public void consumeToken(EndObject token) { consumed.add(token); }
+            public void consumeToken(StartProperty token) { consumed.add(token); }
+            public void consumeToken(EndProperty token) { consumed.add(token); }
+            public void consumeToken(AddKey token) { consumed.add(token); }
+            public void consumeToken(StartArray token) { consumed.add(token); }
+            public void consumeToken(EndArray token) { consumed.add(token); }
+            public void consumeToken(StartItem token) { consumed.add(token); }
+            public void consumeToken(EndItem token) { consumed.add(token); }
+            public void consumeToken(AddString token) { consumed.add(token); }
+            public void consumeToken(AddInt token) { consumed.add(token); }
+            public void consumeToken(AddLong token) { consumed.add(token); }
+            public void consumeToken(AddDouble token) { consumed.add(token); }
+        }));
+        
+        // with the NoToken at the end
+        assertEquals(expected.size() + 1, consumed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), consumed.get(i).toString());
+            assertArrayEquals(expected.get(i).getContext(), consumed.get(i).getContext());
+        }
+    }
+    
+    @Test
+    void produceToken_MultipleDocuments() {
+        Tokenizer t = new Tokenizer(new Scanner("{\"a\":1}\n[true]\n\n{}\n")).withMultipleDocuments();
+        
+        checkNextToken(t, StartObject.class);
+            checkNextToken(t, StartProperty.class);
+                checkAddKeyToken(t, "a");
+                checkAddIntToken(t, 1);
+            checkNextToken(t, EndProperty.class);
+        checkNextToken(t, EndObject.class);
+        checkNextToken(t, EndDocument.class);
+        
+        checkNextToken(t, StartArray.class);
+            checkNextToken(t, StartItem.class);
+                checkNextToken(t, AddTrue.class);
+            checkNextToken(t, EndItem.class);
+        checkNextToken(t, EndArray.class);
+        checkNextToken(t, EndDocument.class);
+        
+        checkNextToken(t, StartObject.class);
+        checkNextToken(t, EndObject.class);
+        checkNextToken(t, EndDocument.class);
+        
+        checkNextToken(t, NoToken.class);
+        assertTrue(t.isInEndState());
+    }
+    
+    @Test
+    void documentStream_OneParserPerDocument() {
+        Tokenizer t = new Tokenizer(new Scanner("{\"id\":1}\n{\"id\":2}\n{\"id\":3}\n")).withMultipleDocuments();
+        
+        List<String> documents = new ArrayList<>();
+        while (!t.isDone()) {
+            Parser parser = new Parser();
+            t.documentStream().forEach(parser::consumeToken);
+            if (parser.hasRoot()) documents.add(parser.getRoot().toJSON());
+        }
+        
+        assertEquals(List.of("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"), documents);
+    }
+    
+    @Test
+    void produceToken_ArrayTokenWithNumbers() {
+        Tokenizer t = new Tokenizer(new Scanner("[3000000000, -2.5E-3, 1e3, 12345678901234567890]"));
+        
+        checkNextToken(t, StartArray.class);
+            checkNextToken(t, StartItem.class);
+                checkAddLongToken(t, 3000000000L);
+            checkNextToken(t, EndItem.class);
+            checkNextToken(t, StartItem.class);
+                checkAddDoubleToken(t, -0.0025);
+            checkNextToken(t, EndItem.class);
+            checkNextToken(t, StartItem.class);
+                checkAddDoubleToken(t, 1000.0);
+            checkNextToken(t, EndItem.class);
+            checkNextToken(t, StartItem.class);
+                checkAddDoubleToken(t, 1.2345678901234567E19);
+            checkNextToken(t, EndItem.class);
+        checkNextToken(t, EndArray.class);
+        
+        checkNextToken(t, NoToken.class);
+        assertTrue(t.isInEndState());
+    }
+    
+    @Test
+    void produceToken_ArrayTokenWithBigNumbers() {
+        Tokenizer t = new Tokenizer(new Scanner("[10, 0.1, 12345678901234567890]")).withBigNumbers();
+        
+        checkNextToken(t, StartArray.class);
+            checkNextToken(t, StartItem.class);
+                checkAddIntToken(t, 10);
+            checkNextToken(t, EndItem.class);
+            checkNextToken(t, StartItem.class);
+                checkAddBigNumberToken(t, "0.1");
+            checkNextToken(t, EndItem.class);
+            checkNextToken(t, StartItem.class);
+                checkAddBigNumberToken(t, "12345678901234567890");
+            checkNextToken(t, EndItem.class);
+        checkNextToken(t, EndArray.class);
 
         checkNextToken(t, NoToken.class);
         assertTrue(t.isInEndState());
@@ -130,7 +440,7 @@ class TokenizerTest {
             checkNextToken(t, StartItem.class);
                 checkNextToken(t, StartArray.class);
                     checkNextToken(t, StartItem.class);
-                        checkAddFloatToken(t, 3.14F);
+                        checkAddDoubleToken(t, 3.14);
                     checkNextToken(t, EndItem.class);
                 checkNextToken(t, EndArray.class);
             checkNextToken(t, EndItem.class);
@@ -295,7 +605,7 @@ class TokenizerTest {
             checkNextToken(t, EndProperty.class);
             checkNextToken(t, StartProperty.class);
                 checkAddKeyToken(t, "baz");
-                checkAddFloatToken(t, 3.14F);
+                checkAddDoubleToken(t, 3.14);
             checkNextToken(t, EndProperty.class);
         checkNextToken(t, EndObject.class);
 
@@ -314,7 +624,7 @@ class TokenizerTest {
             checkNextToken(t, StartItem.class);
                 checkNextToken(t, StartArray.class);
                     checkNextToken(t, StartItem.class);
-                        checkAddFloatToken(t, 3.14F);
+                        checkAddDoubleToken(t, 3.14);
                     checkNextToken(t, EndItem.class);
                     checkNextToken(t, StartItem.class);
                         checkNextToken(t, StartObject.class);
@@ -349,6 +659,69 @@ class TokenizerTest {
         assertTrue(t.isInEndState());
     }
     
+    @Test
+    void produceToken_Recovery() {
+        String source = "{\"a\":1}\n{\"b\":tru}\n{\"c\":[1, 2}\n[3]\n{\"d\":\n";
+        Tokenizer t = new Tokenizer(new Scanner(source)).withMultipleDocuments().withRecovery();
+        Parser parser = new Parser();
+        
+        List<String> documents = new ArrayList<>();
+        List<ErrorToken> errors = new ArrayList<>();
+        while (true) {
+            Token token = t.produceToken();
+            parser.consumeToken(token);
+            if (token instanceof EndDocument) documents.add(parser.getRoot().toJSON());
+            if (token instanceof ErrorToken) errors.add((ErrorToken) token);
+            if (token instanceof NoToken) break;
+        }
+        
+        // the good ones get through, and the bad ones are where they were
+        assertEquals(List.of("{\"a\":1}", "[3]"), documents);
+        assertEquals(3, errors.size());
+        
+        int line2 = source.indexOf("{\"b\"");
+        assertEquals(line2, errors.get(0).getStart());
+        assertTrue(errors.get(0).getEnd() > line2 && errors.get(0).getEnd() <= source.indexOf("{\"c\""));
+        
+        assertEquals(source.indexOf("{\"c\""), errors.get(1).getStart());
+        assertEquals(source.indexOf("2}") + 2, errors.get(1).getEnd());
+        
+        // and running out part way through the last one is an error too
+        assertEquals(source.indexOf("{\"d\""), errors.get(2).getStart());
+        assertEquals(source.length(), errors.get(2).getEnd());
+        assertTrue(t.isDone());
+    }
+    
+    @Test
+    void produceToken_RecoveryAsInputArrives() {
+        FeedableScanner scanner = new FeedableScanner();
+        Tokenizer t = new Tokenizer(scanner).withMultipleDocuments().withRecovery();
+        
+        List<String> tokens = new ArrayList<>();
+        for (String chunk : new String[]{ "[1]\n[x", "x, 2]\n", "", "\n[", "3]\n" }) {
+            scanner.feed(java.nio.ByteBuffer.wrap(chunk.getBytes()));
+            Type type;
+            while ((type = t.next()) != Type.NEED_MORE_INPUT) {
+                tokens.add(type.toString());
+            }
+        }
+        scanner.endOfInput();
+        tokens.add(t.next().toString());
+        
+        assertEquals(List.of(
+            "START_ARRAY", "START_ITEM", "ADD_INT", "END_ITEM", "END_ARRAY", "END_DOCUMENT",
+            "START_ARRAY", "ERROR_TOKEN",
+            "START_ARRAY", "START_ITEM", "ADD_INT", "END_ITEM", "END_ARRAY", "END_DOCUMENT",
+            "NO_TOKEN"
+        ), tokens);
+        
+        // without it, an error is still the end
+        t = new Tokenizer(new Scanner("[x]\n[1]"));
+        assertEquals(Type.START_ARRAY, t.next());
+        assertEquals(Type.ERROR_TOKEN, t.next());
+        assertEquals(Type.ERROR_TOKEN, t.next());
+    }
+    
     private void checkNextToken(Tokenizer tokenizer, Class<? extends Token> tokenClass) {
         Token token = tokenizer.produceToken();
         debugTokenizer(tokenizer, token);
@@ -382,13 +755,31 @@ class TokenizerTest {
         assertEquals(expected_int, i.getValue());
     }
     
-    private void checkAddFloatToken(Tokenizer tokenizer, Float expected_float) {
+    private void checkAddLongToken(Tokenizer tokenizer, long expected_long) {
+        Token token = tokenizer.produceToken();
+        debugTokenizer(tokenizer, token);
+        assertInstanceOf(AddLong.class, token);
+        
+        AddLong l = (AddLong) token;
+        assertEquals(expected_long, l.getValue());
+    }
+    
+    private void checkAddDoubleToken(Tokenizer tokenizer, double expected_double) {
+        Token token = tokenizer.produceToken();
+        debugTokenizer(tokenizer, token);
+        assertInstanceOf(AddDouble.class, token);
+        
+        AddDouble d = (AddDouble) token;
+        assertEquals(expected_double, d.getValue());
+    }
+    
+    private void checkAddBigNumberToken(Tokenizer tokenizer, String expected_number) {
         Token token = tokenizer.produceToken();
         debugTokenizer(tokenizer, token);
-        assertInstanceOf(AddFloat.class, token);
+        assertInstanceOf(AddBigNumber.class, token);
         
-        AddFloat f = (AddFloat) token;
-        assertEquals(expected_float, f.getValue());
+        AddBigNumber n = (AddBigNumber) token;
+        assertEquals(new BigDecimal(expected_number), n.getValue());
     }
     
     private static void debugTokenizer(Tokenizer tokenizer, Token token) {